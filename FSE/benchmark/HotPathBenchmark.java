@@ -0,0 +1,335 @@
+// ------------------------------------------------------------------------- //
+// The HotPathBenchmark class measures the time and allocation of the most   //
+// used paths of the platformer, at every zoom and on levels of two sizes.   //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  benchmark                                                       //
+// Filename: HotPathBenchmark.java                                           //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package benchmark;
+
+import platformer.*;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+public class HotPathBenchmark {
+
+	// Levels of two sizes: a short one with few entities, and a long
+	// one with thousands of them
+	private static final String[] LEVELS = {
+		"1. The Beginning.lvl", "6. Stress Test.lvlb"
+	};
+	private static final double[] ZOOMS = {1d, 1.5d, 2d};
+
+	/* Benchmark sizes */
+	private static final int ENTITIES = 200;  // Entities moved by boundedMove
+	private static final int FRAMES = 500;    // Frames before entities reset
+	private static final int TILE_COLS = 21;  // Columns of the tileset
+	private static final int TILE_ROWS = 6;   // Rows of the tileset
+
+	/**
+	 * Measure every hot path at every zoom and level size, and print one
+	 * row per measurement.
+	 *
+	 * Each row shows the best time of one operation, and the bytes it
+	 * allocates on average along with the allocation rate that results.
+	 * Every later optimisation can be compared against these numbers.
+	 *
+	 * Levels are loaded with the GeometryCache already filled after the
+	 * first load, so `loadFile` measures loading a level seen before.
+	 *
+	 * Run from the FSE directory, with a JVM that has no display:
+	 *
+	 *     javac -d out platformer/*.java benchmark/*.java
+	 *     cp -r platformer/resources out
+	 *     java -Djava.awt.headless=true -cp out benchmark.HotPathBenchmark
+	 *
+	 * Other levels may be measured by listing them in the `levels`
+	 * property, such as large ones made by the LevelGenerator:
+	 *
+	 *     java -cp out platformer.LevelGenerator out/resources/big.lvlb 100000
+	 *     java -Dlevels=big.lvlb -Djava.awt.headless=true -cp out benchmark.HotPathBenchmark
+	 *
+	 * @param args names of benchmarks to run (all if none given).
+	 */
+	public static void main(String[] args) {
+		System.out.printf(
+			"%-22s %-5s %-8s %-8s %14s %12s %10s%n",
+			"benchmark", "zoom", "columns", "entities",
+			"ns/op", "B/op", "MB/s"
+		);
+
+		String[] levels = LEVELS;
+		if (System.getProperty("levels") != null) {
+			levels = System.getProperty("levels").split(",");
+		}
+
+		AssetLoader loader = new AssetLoader(null); // No menu to report to
+		for (double zoom : ZOOMS) {
+			for (String name : levels) {
+				AssetLoader.Sprites graphics;
+				Level lvl;
+				try {
+					graphics = loader.getSprites(zoom).get();
+					lvl = loader.getLevel(name, zoom).get();
+				} catch (Exception e) {
+					graphics = null;
+					lvl = null;
+				}
+				if ((graphics == null) || (lvl == null)) {
+					System.out.println("Failed to load " + name);
+					return;
+				}
+
+				new HotPathBenchmark(loader, graphics, lvl, name, zoom)
+					.runAll(args);
+			}
+		}
+	} /* End method main */
+
+
+	private AssetLoader loader;           // Loader of levels to copy
+	private AssetLoader.Sprites graphics; // Spritesheets of the zoom
+	private Level lvl;                    // Loaded level
+	private String name;                  // Filename of level
+	private double zoom;                  // Zoom of level and spritesheets
+	private String columns;               // Width of level in tiles
+	private String entities;              // Entities the level starts with
+
+	/**
+	 * Create the benchmarks of one zoom and level.
+	 */
+	private HotPathBenchmark(
+		AssetLoader loader, AssetLoader.Sprites graphics, Level lvl,
+		String name, double zoom
+	) {
+		this.loader = loader;
+		this.graphics = graphics;
+		this.lvl = lvl;
+		this.name = name;
+		this.zoom = zoom;
+		this.columns = Integer.toString(
+			(int)Math.round(lvl.getWidth() / (Settings.UNIT * zoom))
+		);
+		this.entities = Integer.toString(lvl.getEntities().size());
+	} /* End constructor */
+
+
+	/**
+	 * Run the benchmarks picked on the command line.
+	 */
+	private void runAll(String[] picked) {
+		if (isPicked(picked, "boundedMove")) { this.boundedMove(); }
+		if (isPicked(picked, "beam")) { this.beam(false); }
+		if (isPicked(picked, "beamDarkened")) { this.beam(true); }
+		if (isPicked(picked, "getTile")) { this.getTile(); }
+		if (isPicked(picked, "exactBounds")) { this.exactBounds(); }
+		if (isPicked(picked, "loadFile")) { this.loadFile(); }
+		if (isPicked(picked, "getLevel")) { this.getLevel(); }
+		if (isPicked(picked, "simulationUpdate")) { this.simulationUpdate(); }
+	} /* End method runAll */
+
+
+	/**
+	 * Check if a benchmark was picked, or if none were.
+	 */
+	private static boolean isPicked(String[] picked, String benchmark) {
+		if (picked.length == 0) { return true; }
+		for (String p : picked) {
+			if (p.equals(benchmark)) { return true; }
+		}
+		return false;
+	} /* End method isPicked */
+
+
+	/**
+	 * Print one row of results.
+	 */
+	private void report(String benchmark, Measure.Result res) {
+		System.out.printf(
+			"%-22s %-5.1f %-8s %-8s %14.1f %12.1f %10.1f%n",
+			benchmark, this.zoom, this.columns, this.entities,
+			res.nanos, res.bytes, res.getAllocRate()
+		);
+	} /* End method report */
+
+
+	/**
+	 * Entity.boundedMove against the collision grid of the level.
+	 *
+	 * One operation moves one entity for one frame. Entities fall from
+	 * the top of the level while walking sideways, and are put back at
+	 * the top every FRAMES frames.
+	 */
+	private void boundedMove() {
+		final CollisionGrid grid = this.lvl.getBounds();
+		final Entity[] moving = new Entity[ENTITIES];
+		final double unit = Settings.UNIT * this.zoom;
+		final double spacing = this.lvl.getWidth() / ENTITIES;
+
+		for (int i = 0; i < ENTITIES; i++) {
+			moving[i] = new Entity(null, new Rectangle2D.Double(
+				0, 0, Settings.P_WIDTH * this.zoom, Settings.P_HEIGHT * this.zoom
+			), null);
+		}
+		Settings.get().setLevelWidth(this.lvl.getWidth());
+
+		this.report("boundedMove", Measure.run(new Measure.Op() {
+			public void run(int i) {
+				int ent = i % ENTITIES;
+				int frame = (i / ENTITIES) % FRAMES;
+				if (frame == 0) {
+					// Put entity back at the top of the level
+					moving[ent].getBounds().x = ent * spacing;
+					moving[ent].getBounds().y = unit;
+				}
+
+				// Fall at full speed, walking sideways
+				int x = (int)(((frame / 100) % 2 == 0 ? 2 : -2) * zoom);
+				int y = (int)((frame % 120 < 60 ? 12 : -12) * zoom);
+				moving[ent].boundedMove(x, y, grid);
+			}
+		}, ENTITIES * FRAMES));
+	} /* End method boundedMove */
+
+
+	/**
+	 * Camera.beam drawing one frame onto an image the size of the screen,
+	 * with or without the darkening of underground levels.
+	 */
+	private void beam(final boolean darken) {
+		final Simulation sim = this.createSimulation();
+		final Camera cam = new Camera(this.lvl, this.graphics.tiles);
+		BufferedImage canvas = new BufferedImage(
+			Settings.resX(), Settings.resY(), BufferedImage.TYPE_INT_RGB
+		);
+		final Graphics2D g2d = canvas.createGraphics();
+
+		this.report(darken ? "beamDarkened" : "beam", Measure.run(new Measure.Op() {
+			public void run(int i) {
+				cam.beam(
+					g2d, sim.getPlayer(), sim.getActive(), zoom,
+					darken, 255, 0d
+				);
+			}
+		}, 20));
+		g2d.dispose();
+	} /* End method beam */
+
+
+	/**
+	 * SpriteHandler.getTile over every tile of the tileset, both ways.
+	 */
+	private void getTile() {
+		final SpriteHandler tiles = this.graphics.tiles;
+
+		this.report("getTile", Measure.run(new Measure.Op() {
+			public void run(int i) {
+				tiles.getTile(
+					i % TILE_COLS, (i / TILE_COLS) % TILE_ROWS,
+					(i / (TILE_COLS * TILE_ROWS)) % 2 == 1
+				);
+			}
+		}, 100000));
+	} /* End method getTile */
+
+
+	/**
+	 * Utilities.exactBounds of every tile of the tileset.
+	 */
+	private void exactBounds() {
+		final BufferedImage[] images = new BufferedImage[TILE_COLS * TILE_ROWS];
+		for (int i = 0; i < images.length; i++) {
+			images[i] = this.graphics.tiles.getTile(i % TILE_COLS, i / TILE_COLS);
+		}
+
+		this.report("exactBounds", Measure.run(new Measure.Op() {
+			public void run(int i) {
+				Utilities.exactBounds(images[i % images.length], 0, 0);
+			}
+		}, images.length));
+	} /* End method exactBounds */
+
+
+	/**
+	 * Level.loadFile, with the collision geometry already cached.
+	 *
+	 * Tiles are built in the ForkJoinPool, so the allocations of every
+	 * thread are counted.
+	 */
+	private void loadFile() {
+		final SpriteHandler tiles = this.graphics.tiles;
+		final SpriteHandler[] costumes = this.graphics.entities;
+		final String path = "/resources/" + this.name;
+
+		this.report("loadFile", Measure.run(new Measure.Op() {
+			public void run(int i) {
+				new Level(tiles, costumes, zoom).loadFile(path);
+			}
+		}, 1, true));
+	} /* End method loadFile */
+
+
+	/**
+	 * AssetLoader.getLevel, which copies a level loaded before.
+	 *
+	 * Copies are made in the background thread of the AssetLoader, so
+	 * the allocations of every thread are counted.
+	 */
+	private void getLevel() {
+		final AssetLoader loader = this.loader;
+		final String name = this.name;
+
+		this.report("getLevel", Measure.run(new Measure.Op() {
+			public void run(int i) {
+				try {
+					loader.getLevel(name, zoom).get();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}, 20, true));
+	} /* End method getLevel */
+
+
+	/**
+	 * Simulation.update, one step of the player and every awake entity.
+	 *
+	 * The player stands still at the start, while entities around it
+	 * keep moving.
+	 */
+	private void simulationUpdate() {
+		final Simulation sim = this.createSimulation();
+
+		this.report("simulationUpdate", Measure.run(new Measure.Op() {
+			public void run(int i) {
+				sim.update(Settings.STEP);
+			}
+		}, 1000));
+	} /* End method simulationUpdate */
+
+
+	/**
+	 * Create a Simulation of a fresh copy of the level.
+	 */
+	private Simulation createSimulation() {
+		Level copy;
+		try {
+			copy = this.loader.getLevel(this.name, this.zoom).get();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		Simulation sim = new Simulation(
+			copy, this.graphics.player, this.graphics.entities
+		);
+		sim.setSeed(0); // Same coins every run
+		return sim;
+	} /* End method createSimulation */
+
+} /* End class HotPathBenchmark */
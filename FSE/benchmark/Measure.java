@@ -0,0 +1,168 @@
+// ------------------------------------------------------------------------- //
+// The Measure class times an operation and counts the memory it allocates,  //
+// for the benchmarks of the platformer.                                     //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  benchmark                                                       //
+// Filename: Measure.java                                                    //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+public class Measure {
+
+	/* Measurement sizes */
+	public static final int WARMUP = 5; // Unmeasured runs
+	public static final int RUNS = 10;  // Measured runs
+
+	// Counts bytes allocated by a thread; only HotSpot JVMs have it
+	private static final com.sun.management.ThreadMXBean THREADS =
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	/**
+	 * An operation to measure.
+	 */
+	public interface Op {
+		/**
+		 * Run the operation once.
+		 *
+		 * @param i number of the run within a batch, to vary inputs.
+		 */
+		void run(int i);
+	} /* End interface Op */
+
+	/**
+	 * Time and allocation of one operation.
+	 */
+	public static class Result {
+		public final double nanos; // Best time per operation
+		public final double bytes; // Bytes allocated per operation
+
+		Result(double nanos, double bytes) {
+			this.nanos = nanos;
+			this.bytes = bytes;
+		} /* End constructor */
+
+		/**
+		 * Get the allocation rate, in megabytes per second.
+		 */
+		public double getAllocRate() {
+			if (this.nanos == 0) { return 0; }
+			return this.bytes / this.nanos * 1000000000d / (1024 * 1024);
+		} /* End method getAllocRate */
+	} /* End class Result */
+
+	/**
+	 * Measure an operation in batches.
+	 *
+	 * The batch is first run WARMUP times so the JIT compiler has compiled
+	 * it, then RUNS times measured. The time of the fastest batch is kept,
+	 * as slower ones were interrupted by other work such as garbage
+	 * collection. Allocation is averaged over every measured batch, and
+	 * counted with the ThreadMXBean of HotSpot:
+	 *
+	 * <https://docs.oracle.com/en/java/javase/17/docs/api/jdk.management/com/sun/management/ThreadMXBean.html>
+	 *
+	 * Only the allocations of the current thread are counted, so the
+	 * operation should not hand its work to other threads; see the other
+	 * `run` for operations that do.
+	 *
+	 * @param op operation to measure.
+	 * @param ops number of times to run the operation per batch.
+	 * @return best time and average allocation per operation.
+	 */
+	public static Result run(Op op, int ops) {
+		return run(op, ops, false);
+	} /* End method run */
+
+
+	/**
+	 * Measure an operation in batches, like the other `run`, optionally
+	 * counting the allocations of every thread.
+	 *
+	 * Operations that hand work to other threads (such as the
+	 * ForkJoinPool of Level.build, or the thread of an AssetLoader) must
+	 * count every thread, or most of their allocation is missed. Other
+	 * threads of the JVM are then counted too, so nothing else should be
+	 * running meanwhile.
+	 *
+	 * @param op operation to measure.
+	 * @param ops number of times to run the operation per batch.
+	 * @param allThreads whether to count the allocations of every thread
+	 *                   rather than only the current one.
+	 * @return best time and average allocation per operation.
+	 */
+	public static Result run(Op op, int ops, boolean allThreads) {
+		double best = Double.MAX_VALUE;
+		long allocated = 0;
+
+		for (int run = 0; run < WARMUP + RUNS; run++) {
+			HashMap<Long, Long> before = allocations(allThreads);
+			long start = System.nanoTime();
+			for (int i = 0; i < ops; i++) {
+				op.run(i);
+			}
+			long time = System.nanoTime() - start;
+			long bytes = allocatedSince(before, allThreads);
+
+			if (run >= WARMUP) {
+				best = Math.min(best, time / (double)ops);
+				allocated += bytes;
+			}
+		}
+		return new Result(best, allocated / (double)(RUNS * (long)ops));
+	} /* End method run */
+
+
+	/**
+	 * Get the bytes allocated so far by each thread.
+	 *
+	 * @param allThreads whether to get every live thread, rather than only
+	 *                   the current one.
+	 * @return bytes allocated, by ID of thread.
+	 */
+	private static HashMap<Long, Long> allocations(boolean allThreads) {
+		long[] ids = allThreads
+			? THREADS.getAllThreadIds()
+			: new long[] {Thread.currentThread().getId()};
+		long[] bytes = THREADS.getThreadAllocatedBytes(ids);
+
+		HashMap<Long, Long> ret = new HashMap<Long, Long>();
+		for (int i = 0; i < ids.length; i++) {
+			if (bytes[i] >= 0) { ret.put(ids[i], bytes[i]); } // -1 if ended
+		}
+		return ret;
+	} /* End method allocations */
+
+
+	/**
+	 * Get the bytes allocated by threads since `allocations` was called.
+	 *
+	 * Threads started since then count everything they allocated. Threads
+	 * that have ended since can no longer be counted.
+	 *
+	 * @param before bytes allocated by each thread before.
+	 * @param allThreads whether to count every live thread, rather than
+	 *                   only the current one.
+	 * @return total bytes allocated since.
+	 */
+	private static long allocatedSince(
+		HashMap<Long, Long> before, boolean allThreads
+	) {
+		long ret = 0;
+		for (Map.Entry<Long, Long> now : allocations(allThreads).entrySet()) {
+			Long was = before.get(now.getKey());
+			ret += now.getValue() - ((was == null) ? 0 : was);
+		}
+		return ret;
+	} /* End method allocatedSince */
+
+} /* End class Measure */
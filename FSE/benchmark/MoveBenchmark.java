@@ -0,0 +1,176 @@
+// ------------------------------------------------------------------------- //
+// The MoveBenchmark class measures the cost of moving entities through the  //
+// collision grid of a level, before and after the swept movement solver.    //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  benchmark                                                       //
+// Filename: MoveBenchmark.java                                              //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package benchmark;
+
+import platformer.*;
+import java.awt.geom.Rectangle2D;
+
+public class MoveBenchmark {
+
+	/* Benchmark sizes */
+	private static final int ROWS = 30;         // Rows of test level
+	private static final int COLS = 400;        // Columns of test level
+	private static final int ENTITIES = 200;    // Entities moved per frame
+	private static final int FRAMES = 2000;     // Frames per measurement
+	private static final int WARMUP = 5;        // Unmeasured runs
+	private static final int RUNS = 10;         // Measured runs
+
+	/**
+	 * Compare the per-entity cost of Entity.boundedMove (swept) against
+	 * the previous pixel-by-pixel solver.
+	 *
+	 * Entities fall onto a floor with scattered platforms while walking
+	 * sideways, which is the most common case in the game. Both solvers
+	 * use the same CollisionGrid, so only the movement solver differs.
+	 *
+	 * Run from the FSE directory:
+	 *
+	 *     javac -d out platformer/*.java benchmark/*.java
+	 *     java -cp out benchmark.MoveBenchmark
+	 */
+	public static void main(String[] args) {
+		System.out.println("zoom   stepped(ns/entity)   swept(ns/entity)");
+
+		double[] zooms = {1d, 1.5d, 2d};
+		for (double zoom : zooms) {
+			Settings.get().setZoom(zoom);
+			CollisionGrid grid = createGrid(zoom);
+			Settings.get().setLevelWidth(COLS * grid.getUnit());
+
+			double stepped = measure(grid, zoom, false);
+			double swept = measure(grid, zoom, true);
+
+			System.out.printf(
+				"%-6.1f %-20.1f %-16.1f%n", zoom, stepped, swept
+			);
+		}
+	} /* End method main */
+
+
+	/**
+	 * Create a test level grid with a floor and regular platforms.
+	 */
+	private static CollisionGrid createGrid(double zoom) {
+		CollisionGrid grid = new CollisionGrid(
+			ROWS, COLS, Settings.UNIT * zoom
+		);
+
+		for (int col = 0; col < COLS; col++) {
+			grid.setSolid(ROWS - 1, col); // Floor
+			grid.setSolid(ROWS - 2, col);
+
+			if (col % 7 < 3) {
+				grid.setSolid(ROWS / 2, col); // Platforms
+			}
+			if (col % 13 == 0) {
+				grid.setSolid(ROWS - 3, col); // Walls to hit
+			}
+		}
+		return grid;
+	} /* End method createGrid */
+
+
+	/**
+	 * Measure the average time to move one entity for one frame.
+	 *
+	 * @param grid level collision grid.
+	 * @param zoom zoom of the level.
+	 * @param swept true to use Entity.boundedMove, false for the old
+	 *              pixel-by-pixel solver.
+	 * @return average nanoseconds per entity per frame.
+	 */
+	private static double measure(CollisionGrid grid, double zoom, boolean swept) {
+		Entity[] entities = new Entity[ENTITIES];
+		double best = Double.MAX_VALUE;
+
+		for (int run = 0; run < WARMUP + RUNS; run++) {
+			// Place entities high above the level at every run
+			for (int i = 0; i < ENTITIES; i++) {
+				entities[i] = new Entity(null, new Rectangle2D.Double(
+					(i * 2 + 1) * grid.getUnit(), 0,
+					Settings.P_WIDTH * zoom, Settings.P_HEIGHT * zoom
+				), null);
+			}
+
+			long start = System.nanoTime();
+			for (int frame = 0; frame < FRAMES; frame++) {
+				// Fast fall at full speed, walking sideways
+				int x = (int)(((frame / 200) % 2 == 0 ? 2 : -2) * zoom);
+				int y = (int)((frame % 120 < 60 ? 12 : -12) * zoom);
+
+				for (int i = 0; i < ENTITIES; i++) {
+					if (swept) {
+						entities[i].boundedMove(x, y, grid);
+					} else {
+						steppedMove(entities[i].getBounds(), x, y, grid);
+					}
+				}
+			}
+			long time = System.nanoTime() - start;
+
+			if (run >= WARMUP) {
+				best = Math.min(best, time / (double)(FRAMES * ENTITIES));
+			}
+		}
+		return best;
+	} /* End method measure */
+
+
+	/**
+	 * The previous Entity.boundedMove, which moves one pixel at a time and
+	 * checks the grid after every pixel. Kept here as the baseline.
+	 */
+	private static void steppedMove(
+		Rectangle2D.Double bounds, int x, int y, CollisionGrid grid
+	) {
+		if ((x == 0) && (y == 0)) { return; }
+
+		boolean xReachedLim = (x == 0); // hit boundary in X dimension
+		boolean yReachedLim = (y == 0); // hit boundary in Y dimension
+
+		int xInc = (x > 0) ? 1 : -1; // set x increment by value
+		int yInc = (y > 0) ? 1 : -1; // set y increment by value
+
+		int cnt = 0; // how many increments have passed
+		while (cnt < 1000) {
+			if (!xReachedLim && cnt < Math.abs(x)) {
+				bounds.x += xInc;
+				if (
+					grid.intersects(bounds)
+					|| (bounds.getMinX() < 0)
+					|| (bounds.getMaxX() > Settings.levelWidth())
+				) {
+					bounds.x -= xInc;
+					xReachedLim = true;
+				}
+			}
+			if (!yReachedLim && cnt < Math.abs(y)) {
+				bounds.y += yInc;
+				if (grid.intersects(bounds)) {
+					bounds.y -= yInc;
+					yReachedLim = true;
+				}
+			}
+			cnt++;
+
+			if (
+				(xReachedLim && yReachedLim)
+				|| ((cnt >= Math.abs(x)) && (cnt >= Math.abs(y)))
+			) {
+				return;
+			}
+		}
+	} /* End method steppedMove */
+
+} /* End class MoveBenchmark */
@@ -0,0 +1,305 @@
+// ------------------------------------------------------------------------- //
+// The AssetLoader class loads spritesheets and levels in a background       //
+// thread and keeps the most recently used ones ready.                       //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  platformer                                                      //
+// Filename: AssetLoader.java                                                //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package platformer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.SwingUtilities;
+
+public class AssetLoader {
+
+	/**
+	 * The spritesheets of one zoom.
+	 */
+	public static class Sprites {
+		public SpriteHandler tiles = null;  // tileset
+		public SpriteHandler player = null; // animations for player one
+
+		// Collection of SpriteHandlers for entities, stored under
+		// their EntityType's costume index
+		public SpriteHandler[] entities = new SpriteHandler[EntityType.values().length];
+	} /* End class Sprites */
+
+	// Only thread that loads or caches assets, so the caches below are
+	// never used by two threads at once.
+	private ExecutorService worker;
+
+	// Most recently used spritesheets by zoom, and loaded levels by zoom
+	// and name. Both forget the least recently used entry when full.
+	private LinkedHashMap<Double, Sprites> sprites;
+	private LinkedHashMap<String, Level> levels;
+
+	private Menu menu; // Menu to report progress on
+
+	/**
+	 * Create an AssetLoader with its own background thread.
+	 *
+	 * Loading spritesheets and levels takes time, so an AssetLoader does
+	 * it in a background thread, where it cannot freeze the window, and
+	 * reports what it is doing on the menu. Levels can be loaded as soon as they are picked on the
+	 * menu, so they are usually ready when the start button is pressed.
+	 *
+	 * Loaded spritesheets and levels are cached with LinkedHashMaps in
+	 * access order, which drop their least recently used entries:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/java/util/LinkedHashMap.html>
+	 *
+	 * @param menu menu to show progress on, or null to not show progress
+	 *             (such as when running a headless Simulation).
+	 */
+	public AssetLoader(Menu menu) {
+		this.menu = menu;
+
+		this.sprites = new LinkedHashMap<Double, Sprites>(4, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Double, Sprites> e) {
+				return this.size() > Settings.CACHE_ZOOMS;
+			}
+		};
+		this.levels = new LinkedHashMap<String, Level>(8, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Level> e) {
+				return this.size() > Settings.CACHE_LEVELS;
+			}
+		};
+
+		// Background thread should not keep the game open once the
+		// window is closed
+		this.worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "AssetLoader");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	} /* End constructor */
+
+
+	/**
+	 * Start loading a level and its spritesheets in the background, so
+	 * they are ready when the level is started.
+	 *
+	 * @param name filename of the level in the resources directory.
+	 * @param zoom zoom to load the level at.
+	 */
+	public void preload(final String name, final double zoom) {
+		this.worker.submit(new Runnable() {
+			public void run() {
+				if (level(name, zoom) == null) {
+					report("Error loading level.");
+				} else {
+					report("Ready to start!");
+				}
+			}
+		});
+	} /* End method preload */
+
+
+	/**
+	 * Start loading the spritesheets of a zoom in the background, for
+	 * levels that are not loaded from files.
+	 *
+	 * @param zoom zoom to load the spritesheets at.
+	 */
+	public void preloadSprites(final double zoom) {
+		this.worker.submit(new Runnable() {
+			public void run() {
+				if (sprites(zoom) == null) {
+					report("Error loading graphics.");
+				} else {
+					report("Ready to start!");
+				}
+			}
+		});
+	} /* End method preloadSprites */
+
+
+	/**
+	 * Get the spritesheets of a zoom, loading them if needed.
+	 *
+	 * @param zoom zoom of the spritesheets.
+	 * @return Future of the spritesheets (null if loading failed).
+	 */
+	public Future<Sprites> getSprites(final double zoom) {
+		return this.worker.submit(new Callable<Sprites>() {
+			public Sprites call() {
+				return sprites(zoom);
+			}
+		});
+	} /* End method getSprites */
+
+
+	/**
+	 * Get a fresh copy of a level, loading it if needed.
+	 *
+	 * @param name filename of the level in the resources directory.
+	 * @param zoom zoom to load the level at.
+	 * @return Future of the level (null if loading failed).
+	 */
+	public Future<Level> getLevel(final String name, final double zoom) {
+		return this.worker.submit(new Callable<Level>() {
+			public Level call() {
+				Level template = level(name, zoom);
+				if (template == null) { return null; }
+
+				// Played levels change; keep the cached one as loaded
+				return new Level(template);
+			}
+		});
+	} /* End method getLevel */
+
+
+	/**
+	 * Find spritesheets of a zoom in the cache, or load them.
+	 *
+	 * Only called from the background thread.
+	 */
+	private Sprites sprites(double zoom) {
+		Sprites ret = this.sprites.get(zoom);
+		if (ret != null) { return ret; } // Already loaded
+
+		this.report("Loading graphics . . .");
+		ret = this.loadSprites(zoom);
+		if (ret != null) { this.sprites.put(zoom, ret); }
+		return ret;
+	} /* End method sprites */
+
+
+	/**
+	 * Find a loaded level in the cache, or load it.
+	 *
+	 * Only called from the background thread.
+	 */
+	private Level level(String name, double zoom) {
+		String key = zoom + "/" + name; // Levels differ between zooms
+		Level ret = this.levels.get(key);
+		if (ret != null) { return ret; } // Already loaded
+
+		Sprites graphics = this.sprites(zoom);
+		if (graphics == null) { return null; }
+
+		this.report("Loading level . . .");
+		ret = new Level(graphics.tiles, graphics.entities, zoom);
+		if (!ret.loadFile("/resources/" + name)) { return null; }
+
+		this.levels.put(key, ret);
+		return ret;
+	} /* End method level */
+
+
+	/**
+	 * Load the spritesheets of a zoom from the resources directory.
+	 *
+	 * @param zoom zoom of the spritesheets.
+	 * @return loaded spritesheets, or null if any failed to load.
+	 */
+	private Sprites loadSprites(double zoom) {
+		Sprites ret = new Sprites();
+
+		// There are three files for three different tile zoom levels.
+		// Load the appropriate one for the seelected zoom.
+		String tilePath = "/resources/tiles-100.png";
+		if (zoom == 2) {
+			tilePath = "/resources/tiles-200.png";
+		} else if (zoom == 1.5) {
+			tilePath = "/resources/tiles-150.png";
+		}
+
+		// Load background tiles
+		// Current object must be passed to reference its classpath
+		// and get the correct file.
+		ret.tiles = SpriteHandler.createFromFile(
+			this, tilePath,
+			Settings.UNIT, Settings.UNIT,
+			Settings.SEP, Settings.SEP,
+			zoom, true
+		);
+		// If loading fails for any graphics object, return fail signal
+		if (ret.tiles == null) { return null; }
+
+		// Load player animations
+		// P_WIDTH and P_HEIGHT, as well as all subsequent WIDTH and
+		// HEIGHT constants, refer to the heights of each tile within
+		// the spritesheet.
+		ret.player = SpriteHandler.createFromFile(
+			this, "/resources/p1.png",
+			Settings.P_WIDTH, Settings.P_HEIGHT, zoom
+		);
+		if (ret.player == null) { return null; }
+
+		// Load entity SpriteHandler under their location stored by
+		// the EntityTypes enumeration.
+
+		// Load slimes
+		ret.entities[EntityType.SLIME.costume] = SpriteHandler.createFromFile(
+			this, "/resources/slime.png",
+			Settings.S_WIDTH, Settings.S_HEIGHT, zoom
+		);
+		if (ret.entities[EntityType.SLIME.costume] == null) { return null; }
+
+		// Load endgoal
+		ret.entities[EntityType.FLAG.costume] = SpriteHandler.createFromFile(
+			this, "/resources/flags.png",
+			Settings.UNIT, Settings.UNIT, zoom
+		);
+		if (ret.entities[EntityType.FLAG.costume] == null) { return null; }
+
+		// Load item resources
+		ret.entities[EntityType.G_COIN.costume] = SpriteHandler.createFromFile(
+			this, "/resources/items.png",
+			Settings.UNIT, Settings.UNIT, zoom
+		);
+		if (ret.entities[EntityType.G_COIN.costume] == null) { return null; }
+
+		// Load torches
+		ret.entities[EntityType.TORCH.costume] = SpriteHandler.createFromFile(
+			this, "/resources/torch.png",
+			Settings.UNIT, Settings.UNIT, zoom
+		);
+		if (ret.entities[EntityType.TORCH.costume] == null) { return null; }
+
+		// Load flies
+		ret.entities[EntityType.FLY.costume] = SpriteHandler.createFromFile(
+			this, "/resources/fly.png",
+			Settings.F_WIDTH, Settings.F_HEIGHT, zoom
+		);
+		if (ret.entities[EntityType.FLY.costume] == null) { return null; }
+
+		return ret;
+	} /* End method loadSprites */
+
+
+	/**
+	 * Show progress on the menu.
+	 *
+	 * Swing components must only be changed in the Swing thread.
+	 *
+	 * @param msg message to show.
+	 */
+	private void report(final String msg) {
+		if (this.menu == null) { return; } // Nowhere to show progress
+
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				menu.setDescription(msg);
+			}
+		});
+	} /* End method report */
+
+} /* End class AssetLoader */
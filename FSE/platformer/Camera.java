@@ -17,11 +17,19 @@ import java.awt.*;
 import java.awt.geom.*;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.Iterator;
 
 public class Camera {
 
-	BufferedImage map; // Store image of level to display
+	Level lvl;             // Level to display
+	ChunkCache chunks;     // Drawn chunks of the level's tiles
+	LightMap lights = null; // Darkening overlay, made when first needed
+	long shifted = 0;      // Columns the level was shifted by when last drawn
+
+	// Visible part of the level, reused every frame
+	private Rectangle2D.Double view = new Rectangle2D.Double();
+
+	int scoreShown = -1;   // Score of last score message
+	String scoreMsg = "";  // Last score message, reused until score changes
 
 	// Provide option to smooth text during rendering
 	private RenderingHints smoothText = new RenderingHints(
@@ -32,14 +40,19 @@ public class Camera {
 	/**
 	 * Create a Camera.
 	 *
-	 * A Camera first renders the base level as one image stored in the
-	 * `map` field. Then, entities and the player are drawn on top each
-	 * frame. This way, the rendering cost of the level itself is small.
+	 * A Camera draws only the part of the level that is visible on the
+	 * screen. Tiles are drawn in chunks that are kept between frames, and
+	 * entities inside the viewport are drawn directly onto the screen, so
+	 * the cost of a frame depends on the size of the window rather than
+	 * the size of the level.
 	 *
-	 * @param lvlMap base image of the level.
+	 * @param lvl level to display.
+	 * @param tiles SpriteHandler holding the tile images of the level.
 	 */
-	public Camera(BufferedImage lvlMap) {
-		this.map = lvlMap;
+	public Camera(Level lvl, SpriteHandler tiles) {
+		this.lvl = lvl;
+		this.chunks = new ChunkCache(lvl, tiles);
+		this.shifted = lvl.getShifted();
 	} /* End constructor */
 
 
@@ -49,7 +62,8 @@ public class Camera {
 	 *
 	 * Draws the frame directly onto a rendering element such as a
 	 * BufferedImage or `paint()` function of a Swing component via a
-	 * Graphics2D object.
+	 * Graphics2D object. Tiles and entities outside the viewport are
+	 * skipped.
 	 *
 	 * @param g2d Graphics2D object.
 	 * @param focus Entity the Camera should focus on.
@@ -60,180 +74,215 @@ public class Camera {
 	 *               light effects applied to light sources.
 	 * @param darkenLvl if darkening is applied, how transparent the dark
 	 *                  layer should be.
+	 * @param alpha part of the next simulation step that has passed, used
+	 *              to draw entities between their last two positions.
 	 */
 	public void beam(
 		Graphics2D g2d, Entity focus, ArrayList<Entity> entities,
-		double zoom, boolean darken, double darkenLvl
+		double zoom, boolean darken, double darkenLvl, double alpha
 	) {
-		// Copy image used to display the level as otherwise painted
-		// entities will be duplicated on subsequent frames.
-		BufferedImage canvas = Utilities.copy(map);
+		long start = Profiler.start();
+		long bytes = Profiler.allocated();
+
+		// Endless levels move under the camera as they stream in; keep
+		// what was drawn of the tiles that are still there
+		if (this.lvl.getShifted() != this.shifted) {
+			this.chunks.shift((int)(this.lvl.getShifted() - this.shifted));
+			if (this.lights != null) {
+				this.lights.relight(this.getStaticLights());
+			}
+			this.shifted = this.lvl.getShifted();
+		}
 
-		/* Keep track of light sources */
-		// Size could be all entities, +1 extra spot for the player
-		Point2D[] lightSources = new Point2D[entities.size() + 1];
-		int lightCnt = 0;
-		Point2D loc;
+		// Position of focus in this frame
+		Rectangle2D.Double loc = focus.getBounds();
+		int focusX = (int)(focus.getRenderX(alpha) + loc.width / 2);
+		int focusY = (int)(focus.getRenderY(alpha) + loc.height / 2);
 
-		// Paint on canvas to not modify base image
-		Graphics2D brush = canvas.createGraphics();
+		// Visible part of the level, in level coordinates
+		Camera.findView(focus, alpha, this.view);
+		int viewX = (int)this.view.x;
+		int viewY = (int)this.view.y;
+		int viewW = (int)this.view.width;
+		int viewH = (int)this.view.height;
+
+		// Position of the level on the screen
+		int xOff = -viewX;
+		int yOff = -viewY;
+
+		/* Prepare darkening overlay */
+		double radius = Settings.brightness() * zoom; // Radius of light
+
+		if (darken) {
+			// Torches are baked into the LightMap once
+			if ((this.lights == null) || (this.lights.getRadius() != radius)) {
+				this.lights = new LightMap(
+					this.lvl, this.getStaticLights(), radius
+				);
+			}
+			long darkStart = Profiler.start();
+			long darkBytes = Profiler.allocated();
+			this.lights.begin(viewX, viewY, darkenLvl);
+			Profiler.end(Profiler.Section.DARKEN, darkStart, darkBytes);
+		}
+
+		// Lights just outside the screen still light up its edges
+		int reach = (int)radius;
+
+		// Draw in level coordinates from here on
+		g2d.translate(xOff, yOff);
+
+		/* Draw visible tiles */
+		this.chunks.draw(g2d, viewX, viewY, viewW, viewH);
 
 		/* Draw other entities */
 		Entity subject;
 		// Iterate over all entities
 		for (int i = 0; i < entities.size(); i++) {
 			subject = entities.get(i);   // Get subject from list
-			loc = subject.getPoint();    // Get point from subject
-
-			// If entity should light up, keep track of its position
-			if (subject.getAttributes().contains(Attribute.LIGHTING)) {
-				// Add centre of entity to list of all points
-				// with light effect
-				lightSources[lightCnt++] = new Point2D.Double(
-					subject.getCentreX(),
-					subject.getCentreY()
+			loc = subject.getBounds();
+
+			// Position of subject in this frame
+			double x = subject.getRenderX(alpha);
+			double y = subject.getRenderY(alpha);
+
+			// If entity should light up and can move, add its light
+			if (
+				darken
+				&& !(subject instanceof Torch)
+				&& subject.getAttributes().contains(Attribute.LIGHTING)
+				&& this.isVisible(loc, viewX, viewY, viewW, viewH, reach)
+			) {
+				this.lights.addLight(
+					x + loc.width / 2, y + loc.height / 2
 				);
 			}
 
+			BufferedImage sprite = subject.getSprite();
+
+			// Skip entities outside of the screen
+			if (!this.isVisible(
+				x, y, sprite.getWidth(), sprite.getHeight(),
+				viewX, viewY, viewW, viewH
+			)) {
+				continue;
+			}
+
 			// Draw subject
-			brush.drawImage(
-				subject.getSprite(), // BufferedImage of focus
-				(int)(loc.getX()),   // X of subject origin
-				(int)(loc.getY()),   // Y of subject origin
+			g2d.drawImage(
+				sprite,            // BufferedImage of subject
+				(int)x,            // X of subject origin
+				(int)y,            // Y of subject origin
 				null
 			);
 		}
 
 		/* Draw `focus`: centred entity */
-		loc = focus.getPoint();
-		// Keep track of player; player needs light too
-		lightSources[lightCnt++] = new Point2D.Double(
-			focus.getCentreX(),
-			focus.getCentreY()
-		);
-		brush.drawImage(
-			focus.getSprite(), // BufferedImage of focus
-			(int)(loc.getX()), // X of focus origin
-			(int)(loc.getY()), // Y of focus origin
-			null
-		);
-
+		// Player needs light too
 		if (darken) {
-			// Apply darkness overlay
-			BufferedImage overlay = this.applyDarkening(
-				lightSources, lightCnt, darkenLvl
-			);
-			brush.drawImage(overlay, 0, 0, null);
+			this.lights.addLight(focusX, focusY);
 		}
-		brush.dispose(); // Free brush; finished using it
-
-		// Scale X and Y to viewports.
-		double xCoord = ((Settings.resX() / 2)) - focus.getCentreX();
-		double yCoord = ((Settings.resY() / 2) * 1.2) - focus.getCentreY();
-
-		// Draw whole composed image onto object
 		g2d.drawImage(
-			canvas,
-			// Scale X of image into available space
-			(int)Math.max(
-				// Limit level-scroll to rightermost of level
-				Settings.resX() - canvas.getWidth(),
-				// Limit level-scroll to leftermost of level
-				Math.min(0, xCoord) // 
-			),
-			(int)Math.max(
-				// Limit level-scroll to bottom of level
-				Settings.resY() - canvas.getHeight(),
-				// Limit level-scroll to top of level
-				Math.min(0, yCoord)
-			),
+			focus.getSprite(),              // BufferedImage of focus
+			(int)focus.getRenderX(alpha),   // X of focus origin
+			(int)focus.getRenderY(alpha),   // Y of focus origin
 			null
 		);
+
+		// Back to screen coordinates
+		g2d.translate(-xOff, -yOff);
+
+		if (darken) {
+			// Apply darkness overlay over the screen
+			g2d.drawImage(this.lights.getOverlay(), 0, 0, null);
+		}
+		Profiler.end(Profiler.Section.BEAM, start, bytes);
 	} /* End method beam */
 
 
 	/**
-	 * Create a darkening overlay for graphics effects.
-	 *
-	 * The overlay consists of a dark black rectangle with transparent
-	 * gradients applied so that there is an illusion of light within the
-	 * level. Gradients are applied with the RadialGradientPaint object:
-	 *
-	 * <https://docs.oracle.com/javase/8/docs/api/java/awt/RadialGradientPaint.html>
-	 *
-	 * Gradients were then painted onto the rectangle with the use of a custom
-	 * AlphaComposite rule that would replace pixels of the rectangle with
-	 * transparent pixels:
-	 *
-	 * <https://docs.oracle.com/javase/7/docs/api/java/awt/AlphaComposite.html>
+	 * Find the part of the level shown on the screen when the Camera is
+	 * centred on `focus`.
 	 *
-	 * No code was directly taken from any docs to make this method.
+	 * The level does not scroll past its edges, so the focus is not always
+	 * in the centre of the screen.
 	 *
-	 * @param lightSources points of light on the level.
-	 * @param lightCnt number of points of light on level.
-	 * @param darkenLvl amount to darken the level by.
-	 * @return BufferedImage overlay to apply.
+	 * @param focus Entity the Camera should focus on.
+	 * @param alpha part of the next simulation step that has passed.
+	 * @param out rectangle to store the viewport in, in level coordinates.
 	 */
-	public BufferedImage applyDarkening(
-		Point2D[] lightSources, int lightCnt, double darkenLvl
-	) {
-		// Create BufferedImage to apply overlay effect onto.
-		BufferedImage overlay = new BufferedImage(
-			(int)Settings.levelWidth(),  // Level width
-			(int)Settings.levelHeight(), // Level height
-			BufferedImage.TYPE_INT_ARGB  // Default type with alpha (transparency)
+	public static void findView(Entity focus, double alpha, Rectangle2D.Double out) {
+		Rectangle2D.Double loc = focus.getBounds();
+		int focusX = (int)(focus.getRenderX(alpha) + loc.width / 2);
+		int focusY = (int)(focus.getRenderY(alpha) + loc.height / 2);
+
+		// Screen and level sizes that belong together
+		Settings.Snapshot cfg = Settings.snapshot();
+
+		// Scale X and Y to viewports.
+		double xCoord = ((cfg.resX / 2)) - focusX;
+		double yCoord = ((cfg.resY / 2) * 1.2) - focusY;
+
+		// Position of the level on the screen
+		int xOff = (int)Math.max(
+			// Limit level-scroll to rightermost of level
+			cfg.resX - cfg.levelWidth,
+			// Limit level-scroll to leftermost of level
+			Math.min(0, xCoord)
+		);
+		int yOff = (int)Math.max(
+			// Limit level-scroll to bottom of level
+			cfg.resY - cfg.levelHeight,
+			// Limit level-scroll to top of level
+			Math.min(0, yCoord)
 		);
 
-		// Paint on the overlay
-		Graphics2D g2d = overlay.createGraphics();
+		out.setRect(-xOff, -yOff, cfg.resX, cfg.resY);
+	} /* End method findView */
 
-		// Apply black colour; transparency is set by darkenLvl, 255 being opaque
-		g2d.setPaint(new Color(0, 0, 0, (int)(darkenLvl)));
 
-		// Create dark rectangle
-		g2d.fill(new Rectangle2D.Double(
-			0, 0,                   // X, Y
-			Settings.levelWidth(),  // Same as level width
-			Settings.levelHeight()) // Same as level height
+	/**
+	 * Check if a rectangle is inside the viewport.
+	 *
+	 * @return true if any part of the rectangle is visible, else false.
+	 */
+	private boolean isVisible(
+		double x, double y, double w, double h,
+		int viewX, int viewY, int viewW, int viewH
+	) {
+		return (x < viewX + viewW) && (x + w > viewX)
+			&& (y < viewY + viewH) && (y + h > viewY);
+	} /* End method isVisible */
+
+
+	/**
+	 * Check if a rectangle is inside the viewport grown by `margin` pixels
+	 * on every side.
+	 */
+	private boolean isVisible(
+		Rectangle2D r, int viewX, int viewY, int viewW, int viewH, int margin
+	) {
+		return this.isVisible(
+			r.getX(), r.getY(), r.getWidth(), r.getHeight(),
+			viewX - margin, viewY - margin,
+			viewW + margin * 2, viewH + margin * 2
 		);
+	} /* End method isVisible */
 
-		if (darkenLvl < Settings.COLOUR_GRADIENT.getAlpha()) {
-			g2d.dispose();  // Finished
-			return overlay; // Not dark enough for torch circles
-		}
 
-		// Enable overlaying transparent paint atop of rectangle through blending
-		g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.DST_ATOP));
-
-		// Iterate over all light sources and apply radial gradient paint
-		// for light effect:
-		for (int num = 0; num < lightCnt; num++) {
-			// Centre of light effect application
-			Point2D centre = lightSources[num];
-
-			float radius = (float)(Settings.brightness() * Settings.zoom());
-
-			// Create new Radial Gradient Paint
-			RadialGradientPaint rgp = new RadialGradientPaint(
-				centre, radius, // Centre and radius of circle
-				new float[] {0f, 1f}, // Only two colours
-				new Color[] {
-					new Color(0, 0, 0, 0),   // Transparent
-					Settings.COLOUR_GRADIENT // Almost opaque
-				}
-			);
+	/**
+	 * Find the light sources of the level that never move.
+	 *
+	 * @return list of all torches in the level.
+	 */
+	private ArrayList<Entity> getStaticLights() {
+		ArrayList<Entity> ret = new ArrayList<Entity>();
 
-			// Apply gradient to BufferedImage as a circle
-			g2d.setPaint(rgp);
-			g2d.fill(new Ellipse2D.Double(
-				centre.getX()-radius, // Top-left corner
-				centre.getY()-radius, // Top-left corner
-				radius * 2, radius *2 // Diameter = r * 2
-			));
+		for (Entity subject : this.lvl.getEntities()) {
+			if (subject instanceof Torch) { ret.add(subject); }
 		}
-		g2d.dispose(); // Finished
-		return overlay;
-	} /* End method applyDarkening */
+		return ret;
+	} /* End method getStaticLights */
 
 
 	/**
@@ -278,7 +327,11 @@ public class Camera {
 		g2d.setFont(font); // Set font to draw message with
 		g2d.setColor(Settings.COLOUR_GOLD); // Score should be golden!
 		g2d.setRenderingHints(smoothText);  // Render text smoothly.
-		String msg = String.format("Coins: %04d", score); // Message to draw.
+		if (score != this.scoreShown) { // Only format a new score
+			this.scoreShown = score;
+			this.scoreMsg = String.format("Coins: %04d", score);
+		}
+		String msg = this.scoreMsg; // Message to draw.
 
 		// Calculate size of final message with FontMetrics
 		FontMetrics fm = g2d.getFontMetrics();
@@ -296,4 +349,36 @@ public class Camera {
 		g2d.drawString(msg, xPos, yPos);
 	} /* End method showScore */
 
+
+	/**
+	 * Draw the profiler overlay in the top left of the screen.
+	 *
+	 * Lines are drawn on a dark box so they can be read over any level.
+	 *
+	 * @param g2d Graphics2D object.
+	 * @param font the font to use for the lines; should be monospaced.
+	 * @param lines lines to draw, such as from Profiler.summary().
+	 */
+	public void showProfile(Graphics2D g2d, Font font, String[] lines) {
+		if (lines.length == 0) { return; } // Nothing measured yet
+
+		g2d.setFont(font);
+		g2d.setRenderingHints(smoothText); // Render text smoothly.
+		FontMetrics fm = g2d.getFontMetrics();
+
+		// Size box to fit the widest line
+		int width = 0;
+		for (String ln : lines) { width = Math.max(width, fm.stringWidth(ln)); }
+		int sep = (int)Settings.SCORE_SEP;
+		int lineH = fm.getHeight();
+
+		g2d.setColor(Settings.COLOUR_GRADIENT);
+		g2d.fillRect(sep / 2, sep / 2, width + sep, lineH * lines.length + sep);
+
+		g2d.setColor(Color.WHITE);
+		for (int i = 0; i < lines.length; i++) {
+			g2d.drawString(lines[i], sep, sep + fm.getAscent() + lineH * i);
+		}
+	} /* End method showProfile */
+
 } /* End class Camera */
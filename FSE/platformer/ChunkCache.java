@@ -0,0 +1,212 @@
+// ------------------------------------------------------------------------- //
+// The ChunkCache class draws the tiles of a level in square chunks that are //
+// created only when needed and forgotten when far away.                     //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  platformer                                                      //
+// Filename: ChunkCache.java                                                 //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package platformer;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ChunkCache {
+
+	// Marks a chunk made only of air, which needs no image at all
+	private static final BufferedImage BLANK = new BufferedImage(
+		1, 1, BufferedImage.TYPE_INT_ARGB
+	);
+
+	private Level lvl;           // Level to draw
+	private SpriteHandler tiles; // Tile images of the level
+	private double unit;         // Size of one tile in pixels (with zoom)
+	private int capacity = 0;    // Most chunks to keep at once
+
+	// Chunks that have been drawn, least recently used first.
+	// Keys are (chunk row << 32) | chunk column.
+	private LinkedHashMap<Long, BufferedImage> chunks =
+		new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+				Map.Entry<Long, BufferedImage> eldest
+			) {
+				return size() > capacity;
+			}
+		};
+
+	/**
+	 * Create a ChunkCache for a level.
+	 *
+	 * Drawing a whole level into one image takes memory for every pixel of
+	 * the level, which grows with its width and with the square of the
+	 * zoom. Instead, the level is split into chunks of Settings.CHUNK by
+	 * Settings.CHUNK tiles. A chunk is only drawn once the camera comes
+	 * near it, and the least recently used chunks are forgotten when there
+	 * are more than enough to cover the screen. Memory use then depends
+	 * on the size of the window instead of the size of the level.
+	 *
+	 * @param lvl level to draw.
+	 * @param tiles SpriteHandler holding the tile images of the level.
+	 */
+	public ChunkCache(Level lvl, SpriteHandler tiles) {
+		this.lvl = lvl;
+		this.tiles = tiles;
+		this.unit = Settings.UNIT * lvl.getZoom();
+	} /* End constructor */
+
+
+	/**
+	 * Draw the chunks of the level that are inside the viewport.
+	 *
+	 * Chunks within one chunk of the viewport are drawn into the cache
+	 * ahead of time so they are ready when the camera reaches them.
+	 *
+	 * @param g2d Graphics2D object, in level coordinates.
+	 * @param viewX x position of the viewport within the level.
+	 * @param viewY y position of the viewport within the level.
+	 * @param viewW width of the viewport.
+	 * @param viewH height of the viewport.
+	 */
+	public void draw(
+		Graphics2D g2d, int viewX, int viewY, int viewW, int viewH
+	) {
+		double size = this.unit * Settings.CHUNK; // One chunk in pixels
+
+		// Chunks inside the viewport
+		int colMin = Math.max(0, (int)Math.floor(viewX / size));
+		int rowMin = Math.max(0, (int)Math.floor(viewY / size));
+		int colMax = (int)Math.floor((viewX + viewW) / size);
+		int rowMax = (int)Math.floor((viewY + viewH) / size);
+
+		// Keep enough chunks for the viewport and the margin around it
+		this.capacity = Math.max(
+			this.capacity, (colMax - colMin + 3) * (rowMax - rowMin + 3)
+		);
+
+		// Prepare chunks just outside of the viewport
+		for (int row = rowMin - 1; row <= rowMax + 1; row++) {
+			for (int col = colMin - 1; col <= colMax + 1; col++) {
+				if ((row < rowMin) || (row > rowMax) || (col < colMin) || (col > colMax)) {
+					this.getChunk(row, col);
+				}
+			}
+		}
+
+		// Draw chunks inside the viewport
+		for (int row = rowMin; row <= rowMax; row++) {
+			for (int col = colMin; col <= colMax; col++) {
+				BufferedImage chunk = this.getChunk(row, col);
+
+				if ((chunk == null) || (chunk == BLANK)) { continue; }
+
+				g2d.drawImage(
+					chunk,
+					(int)(col * Settings.CHUNK * this.unit), // Same as tile origin
+					(int)(row * Settings.CHUNK * this.unit),
+					null
+				);
+			}
+		}
+	} /* End method draw */
+
+
+	/**
+	 * Get the image of a chunk, drawing it if it is not cached.
+	 *
+	 * @param row row of the chunk.
+	 * @param col column of the chunk.
+	 * @return image of the chunk, BLANK if it has no tiles, or null if it is
+	 *         outside of the level.
+	 */
+	private BufferedImage getChunk(int row, int col) {
+		if ((row < 0) || (col < 0)) { return null; }
+
+		// First and last tiles of the chunk
+		int rowMin = row * Settings.CHUNK;
+		int colMin = col * Settings.CHUNK;
+		int rowMax = rowMin + Settings.CHUNK - 1;
+		int colMax = colMin + Settings.CHUNK - 1;
+
+		if (rowMin >= this.lvl.getRowNum()) { return null; } // Below level
+
+		long key = ((long)row << 32) | col;
+		BufferedImage chunk = this.chunks.get(key);
+
+		if (chunk != null) { return chunk; } // Already drawn
+
+		if (this.lvl.isEmpty(rowMin, colMin, rowMax, colMax)) {
+			chunk = BLANK; // Nothing to draw
+		} else {
+			// Tile origins are rounded down, so the chunk spans from its
+			// first tile origin to the first tile origin of the next chunk.
+			int x = (int)(colMin * this.unit);
+			int y = (int)(rowMin * this.unit);
+			chunk = new BufferedImage(
+				(int)((colMax + 1) * this.unit) - x,
+				(int)((rowMax + 1) * this.unit) - y,
+				BufferedImage.TYPE_INT_ARGB
+			);
+
+			Graphics2D g2d = chunk.createGraphics();
+			g2d.translate(-x, -y); // Draw in level coordinates
+			this.lvl.paintTiles(g2d, this.tiles, rowMin, colMin, rowMax, colMax);
+			g2d.dispose();
+		}
+
+		this.chunks.put(key, chunk);
+		return chunk;
+	} /* End method getChunk */
+
+
+	/**
+	 * Forget every chunk, such as when the tiles of the level change.
+	 */
+	public void clear() { this.chunks.clear(); }
+
+
+	/**
+	 * Move drawn chunks left along with the tiles of an endless level,
+	 * after it has been shifted (see Level.shift).
+	 *
+	 * Chunks that are still in the level keep their images under their
+	 * new column, so only the chunks of new columns must be drawn. Chunks
+	 * that left the level, or that touch the new columns, are forgotten.
+	 * If the shift is not a whole number of chunks, every chunk is.
+	 *
+	 * @param cols columns the level was shifted left by.
+	 */
+	public void shift(int cols) {
+		if (cols % Settings.CHUNK != 0) {
+			this.clear(); // Chunks no longer line up with tiles
+			return;
+		}
+
+		int n = cols / Settings.CHUNK; // Chunk columns moved
+		// Chunk columns filled only by tiles that were already there
+		int kept = (this.lvl.getColNum(0) - cols) / Settings.CHUNK;
+
+		// Put chunks back in the same order, so the least recently used
+		// are still forgotten first
+		ArrayList<Long> keys = new ArrayList<Long>(this.chunks.keySet());
+		ArrayList<BufferedImage> images =
+			new ArrayList<BufferedImage>(this.chunks.values());
+		this.chunks.clear();
+		for (int i = 0; i < keys.size(); i++) {
+			long row = keys.get(i) >> 32;
+			int col = (int)(keys.get(i) & 0xFFFFFFFFL) - n;
+			if ((col < 0) || (col >= kept)) { continue; }
+
+			this.chunks.put((row << 32) | col, images.get(i));
+		}
+	} /* End method shift */
+
+} /* End class ChunkCache */
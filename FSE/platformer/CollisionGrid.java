@@ -0,0 +1,413 @@
+// ------------------------------------------------------------------------- //
+// The CollisionGrid class stores the collision data of a level as a grid of //
+// tiles so that collision checks only examine nearby tiles.                 //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  platformer                                                      //
+// Filename: CollisionGrid.java                                              //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package platformer;
+
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CollisionGrid {
+
+	/* Cell states */
+	public static final byte EMPTY   = 0; // Nothing to collide with
+	public static final byte SOLID   = 1; // Whole tile is solid
+	public static final byte PARTIAL = 2; // Tile has its own sub-shape
+
+	private int rows;    // Rows of the grid (same as level)
+	private int cols;    // Columns of the grid (same as level)
+	private double unit; // Size of one tile in pixels (with zoom)
+
+	// One byte per tile: cells[row * cols + col]
+	private byte[] cells;
+
+	// Sub-shapes of PARTIAL tiles, relative to the tile's own origin.
+	// Irregular tiles are rare, so they are only stored when needed.
+	// Levels are built by several threads at once, so the map must be
+	// safe to add to from more than one thread.
+	private ConcurrentHashMap<Integer, Shape> parts =
+		new ConcurrentHashMap<Integer, Shape>();
+
+	/**
+	 * Create an empty collision grid for a level.
+	 *
+	 * A CollisionGrid replaces one large merged Area of a whole level.
+	 * Checking a rectangle against a merged Area must walk the whole path
+	 * of the Area, so the cost grows with the size of the level. Here,
+	 * only the tiles underneath the rectangle are checked, so the cost of
+	 * a check depends only on the size of the rectangle.
+	 *
+	 * Most tiles are full squares, so they are stored as a single byte.
+	 * Tiles that are not square (slopes, ledges, bridges) keep their own
+	 * shape, which is checked only if the rectangle reaches that tile.
+	 *
+	 * @param rows number of rows of tiles.
+	 * @param cols number of columns of tiles.
+	 * @param unit width and height of one tile in pixels.
+	 */
+	public CollisionGrid(int rows, int cols, double unit) {
+		this.rows = rows;
+		this.cols = cols;
+		this.unit = unit;
+		this.cells = new byte[rows * cols];
+	} /* End constructor */
+
+
+	/**
+	 * Mark a whole tile as solid.
+	 *
+	 * Silently fails if row and column are not within the grid.
+	 *
+	 * @param row row of the tile.
+	 * @param col column of the tile.
+	 */
+	public void setSolid(int row, int col) {
+		if (!this.inGrid(row, col)) { return; }
+
+		this.cells[row * this.cols + col] = SOLID;
+	} /* End method setSolid */
+
+
+	/**
+	 * Mark a tile as having its own irregular shape.
+	 *
+	 * The shape must be relative to the top-left corner of the tile, not
+	 * the level. This lets tiles of the same type share one shape.
+	 *
+	 * Silently fails if row and column are not within the grid.
+	 *
+	 * @param row row of the tile.
+	 * @param col column of the tile.
+	 * @param shape shape of the tile relative to the tile origin.
+	 */
+	public void setShape(int row, int col, Shape shape) {
+		if (!this.inGrid(row, col)) { return; }
+
+		int index = row * this.cols + col;
+		this.cells[index] = PARTIAL;
+		this.parts.put(index, shape);
+	} /* End method setShape */
+
+
+	/**
+	 * Move every tile left by the width of another grid, and fill the
+	 * columns freed on the right with the tiles of that grid.
+	 *
+	 * Used while streaming endless levels (see Level.shift). Sub-shapes
+	 * are relative to their own tile, so only their keys change.
+	 *
+	 * Silently fails if the other grid has different rows or is wider.
+	 *
+	 * @param added grid of the columns to add on the right.
+	 */
+	public void shift(CollisionGrid added) {
+		if ((added.rows != this.rows) || (added.cols > this.cols)) { return; }
+
+		int n = added.cols;       // Columns added and dropped
+		int keep = this.cols - n; // Columns moved left
+
+		for (int row = 0; row < this.rows; row++) {
+			int start = row * this.cols;
+			System.arraycopy(this.cells, start + n, this.cells, start, keep);
+			System.arraycopy(added.cells, row * n, this.cells, start + keep, n);
+		}
+
+		// Move kept sub-shapes, then add those of the new columns
+		ConcurrentHashMap<Integer, Shape> moved =
+			new ConcurrentHashMap<Integer, Shape>();
+		for (Map.Entry<Integer, Shape> part : this.parts.entrySet()) {
+			int col = part.getKey() % this.cols;
+			if (col >= n) { moved.put(part.getKey() - n, part.getValue()); }
+		}
+		for (Map.Entry<Integer, Shape> part : added.parts.entrySet()) {
+			int row = part.getKey() / n;
+			int col = part.getKey() % n;
+			moved.put(row * this.cols + keep + col, part.getValue());
+		}
+		this.parts = moved;
+	} /* End method shift */
+
+
+	/**
+	 * Check if a rectangle intersects anything stored in the grid.
+	 *
+	 * Like Shape.intersects, rectangles that only touch the edge of a tile
+	 * do not count as intersecting. This lets entities stand on the ground
+	 * and walk along walls.
+	 *
+	 * @param rect rectangle to check.
+	 * @return true if rectangle intersects a tile, else false.
+	 */
+	public boolean intersects(Rectangle2D rect) {
+		return this.intersects(
+			rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight()
+		);
+	} /* End method intersects */
+
+
+	/**
+	 * Check if a rectangle intersects anything stored in the grid.
+	 *
+	 * Only the tiles the rectangle overlaps are checked.
+	 *
+	 * @param x x position of rectangle.
+	 * @param y y position of rectangle.
+	 * @param w width of rectangle.
+	 * @param h height of rectangle.
+	 * @return true if rectangle intersects a tile, else false.
+	 */
+	public boolean intersects(double x, double y, double w, double h) {
+		if ((w <= 0) || (h <= 0)) { return false; } // Empty rectangle
+
+		// Tile origins are rounded down to whole pixels like when the
+		// level is drawn, so include one extra pixel on the far side.
+		int colMin = Math.max(0, (int)Math.floor(x / this.unit));
+		int rowMin = Math.max(0, (int)Math.floor(y / this.unit));
+		int colMax = Math.min(this.cols - 1, (int)Math.floor((x + w + 1) / this.unit));
+		int rowMax = Math.min(this.rows - 1, (int)Math.floor((y + h + 1) / this.unit));
+
+		for (int row = rowMin; row <= rowMax; row++) {
+			double originY = this.getOrigin(row);
+
+			// Tile does not overlap rectangle in Y
+			if ((y >= originY + this.unit) || (y + h <= originY)) { continue; }
+
+			for (int col = colMin; col <= colMax; col++) {
+				int index = row * this.cols + col;
+				byte cell = this.cells[index];
+
+				if (cell == EMPTY) { continue; } // Nothing here
+
+				double originX = this.getOrigin(col);
+
+				// Tile does not overlap rectangle in X
+				if ((x >= originX + this.unit) || (x + w <= originX)) {
+					continue;
+				}
+
+				if (cell == SOLID) { return true; } // Whole tile
+
+				// Check the tile's own shape, moving the rectangle
+				// instead of the shape so the shape may be shared.
+				if (this.parts.get(index).intersects(
+					x - originX, y - originY, w, h
+				)) {
+					return true;
+				}
+			}
+		}
+		return false; // No tiles hit
+	} /* End method intersects */
+
+
+	/**
+	 * Find how far a rectangle can move along one axis without hitting
+	 * anything stored in the grid.
+	 *
+	 * This gives the same result as moving the rectangle one pixel at a
+	 * time and stopping before the first pixel that intersects the grid,
+	 * but the time of impact against each tile in the path is found in
+	 * one step instead. Only irregular tiles in the path are checked
+	 * pixel by pixel, and only over the pixels that reach their shape.
+	 *
+	 * @param rect rectangle to move (not modified).
+	 * @param dist signed number of pixels to move.
+	 * @param horizontal true to move along the X axis, false for Y.
+	 * @return signed number of pixels the rectangle can move, between 0
+	 *         and `dist`.
+	 */
+	public int sweep(Rectangle2D rect, int dist, boolean horizontal) {
+		if (dist == 0) { return 0; } // No movement
+
+		int inc = (dist > 0) ? 1 : -1; // Direction of movement
+		int steps = Math.abs(dist);    // Pixels to move
+
+		// Split rectangle into the axis of movement ("along") and the
+		// other axis ("across") so one method handles X and Y.
+		double lo    = horizontal ? rect.getX() : rect.getY();
+		double len   = horizontal ? rect.getWidth() : rect.getHeight();
+		double pLo   = horizontal ? rect.getY() : rect.getX();
+		double pLen  = horizontal ? rect.getHeight() : rect.getWidth();
+
+		if ((len <= 0) || (pLen <= 0)) { return dist; } // Empty rectangle
+
+		// Range of pixels covered by the whole movement
+		double sweepLo = (inc > 0) ? lo : lo - steps;
+		double sweepHi = (inc > 0) ? lo + len + steps : lo + len;
+
+		int aMin = Math.max(0, (int)Math.floor(sweepLo / this.unit));
+		int pMin = Math.max(0, (int)Math.floor(pLo / this.unit));
+		int aMax = (int)Math.floor((sweepHi + 1) / this.unit);
+		int pMax = (int)Math.floor((pLo + pLen + 1) / this.unit);
+
+		// Clamp ranges to the grid
+		aMax = Math.min(aMax, (horizontal ? this.cols : this.rows) - 1);
+		pMax = Math.min(pMax, (horizontal ? this.rows : this.cols) - 1);
+
+		int hit = steps + 1; // First step that collides (none yet)
+
+		for (int p = pMin; p <= pMax; p++) {
+			double pOrigin = this.getOrigin(p);
+
+			for (int a = aMin; a <= aMax; a++) {
+				int row = horizontal ? p : a;
+				int col = horizontal ? a : p;
+				int index = row * this.cols + col;
+				byte cell = this.cells[index];
+
+				if (cell == EMPTY) { continue; } // Nothing here
+
+				double aOrigin = this.getOrigin(a);
+
+				if (cell == SOLID) {
+					// Tile does not overlap rectangle across axis
+					if ((pLo >= pOrigin + this.unit) || (pLo + pLen <= pOrigin)) {
+						continue;
+					}
+					hit = Math.min(hit, this.firstHit(
+						lo, len, aOrigin, this.unit, inc
+					));
+					continue;
+				}
+
+				/* Irregular tile; check its shape */
+				Shape part = this.parts.get(index);
+				Rectangle2D box = part.getBounds2D(); // Relative to tile
+
+				double boxA  = aOrigin + (horizontal ? box.getX() : box.getY());
+				double boxAL = horizontal ? box.getWidth() : box.getHeight();
+				double boxP  = pOrigin + (horizontal ? box.getY() : box.getX());
+				double boxPL = horizontal ? box.getHeight() : box.getWidth();
+
+				// Shape does not overlap rectangle across axis
+				if ((pLo >= boxP + boxPL) || (pLo + pLen <= boxP)) {
+					continue;
+				}
+
+				// Step pixel by pixel only while the rectangle
+				// overlaps the bounding box of the shape.
+				for (
+					int step = this.firstHit(lo, len, boxA, boxAL, inc);
+					step < hit && this.overlaps(lo + inc * step, len, boxA, boxAL);
+					step++
+				) {
+					double moved = lo + inc * step;
+					boolean touching = horizontal
+						? part.intersects(
+							moved - aOrigin, pLo - pOrigin, len, pLen
+						)
+						: part.intersects(
+							pLo - pOrigin, moved - aOrigin, pLen, len
+						);
+
+					if (touching) {
+						hit = step; // Earliest collision so far
+						break;
+					}
+				}
+			}
+		}
+		return inc * (hit - 1); // Stop one pixel before collision
+	} /* End method sweep */
+
+
+	/**
+	 * Find the first whole-pixel step where a moving line segment overlaps
+	 * a stationary one.
+	 *
+	 * Segments that only touch at their ends do not overlap.
+	 *
+	 * @param lo start of moving segment.
+	 * @param len length of moving segment.
+	 * @param tileLo start of stationary segment.
+	 * @param tileLen length of stationary segment.
+	 * @param inc direction of movement, 1 or -1.
+	 * @return first step (1 or more) that overlaps, or Integer.MAX_VALUE
+	 *         if the segments never overlap.
+	 */
+	private int firstHit(
+		double lo, double len, double tileLo, double tileLen, int inc
+	) {
+		// Distance needed before the leading edge passes the tile
+		double gap = (inc > 0) ? (tileLo - lo - len) : (lo - tileLo - tileLen);
+		int step = Math.max(1, (int)Math.floor(gap) + 1);
+
+		// Segment must still overlap (not already past the tile)
+		if (!this.overlaps(lo + inc * step, len, tileLo, tileLen)) {
+			return Integer.MAX_VALUE;
+		}
+		return step;
+	} /* End method firstHit */
+
+
+	/**
+	 * Check if two line segments overlap (not just touch).
+	 */
+	private boolean overlaps(double lo, double len, double tileLo, double tileLen) {
+		return (lo < tileLo + tileLen) && (lo + len > tileLo);
+	} /* End method overlaps */
+
+
+	/**
+	 * Get the state of one tile.
+	 *
+	 * @param row row of the tile.
+	 * @param col column of the tile.
+	 * @return EMPTY, SOLID or PARTIAL.
+	 */
+	public byte getCell(int row, int col) {
+		if (!this.inGrid(row, col)) { return EMPTY; }
+
+		return this.cells[row * this.cols + col];
+	} /* End method getCell */
+
+
+	/**
+	 * Get the shape of a PARTIAL tile, relative to the tile's origin.
+	 *
+	 * @param row row of the tile.
+	 * @param col column of the tile.
+	 * @return shape of the tile, or null if it is not PARTIAL.
+	 */
+	public Shape getPart(int row, int col) {
+		if (this.getCell(row, col) != PARTIAL) { return null; }
+
+		return this.parts.get(row * this.cols + col);
+	} /* End method getPart */
+
+
+	/**
+	 * Get the pixel position of the origin of a row or column.
+	 *
+	 * Positions are rounded down the same way Level positions tiles.
+	 */
+	public double getOrigin(int index) { return (int)(index * this.unit); }
+
+
+	/**
+	 * Check if a row and column are inside the grid.
+	 */
+	private boolean inGrid(int row, int col) {
+		return (row >= 0) && (row < this.rows) && (col >= 0) && (col < this.cols);
+	} /* End method inGrid */
+
+
+	/**
+	 * Get dimensions of the grid.
+	 */
+	public int getRowNum()  { return this.rows; }
+	public int getColNum()  { return this.cols; }
+	public double getUnit() { return this.unit; }
+
+} /* End class CollisionGrid */
@@ -1,7 +1,6 @@
 // ------------------------------------------------------------------------- //
 // The Effect class represents timed effects that may be applied to entities.//
-// As of the submission date no effects have been implemented using this     //
-// class. It is submitted for completeness.                                  //
+// Effects are applied and expired by an EffectScheduler.                    //
 //                                                                           //
 // Package:  platformer                                                      //
 // Filename: Effect.java                                                     //
@@ -12,66 +11,48 @@
 
 package platformer;
 
-import java.util.concurrent.*;
+class Effect {
 
-abstract class Effect implements Delayed {
-
-	private long startTime; // starting time of the effect
+	private Attribute attr; // Attribute given while the effect lasts
+	private long steps;     // Simulation steps the effect lasts
 
 	/**
-	 * Classes should implement their own Effect with this class.
-	 *
-	 * A delay is set through the constructor, while the abstract `apply`
-	 * method should be overriden to apply the effect to an Entity. The
-	 * actual "delay" is from use of the Java DelayQueue Collections object:
-	 *
-	 * <https://docs.oracle.com/javase/8/docs/api/java/util/concurrent/DelayQueue.html>
+	 * Create an effect giving an attribute to an entity for a time.
 	 *
-	 * Delay-setting code, ie. how to implement the "Delayed" object type
-	 * with the getDelay and compareTo methods, were taken almost verbatim
-	 * from this blog post:
+	 * The length of an effect is a number of simulation steps, counted by
+	 * the EffectScheduler only while the level is being simulated, so
+	 * effects do not run out while the game is paused.
 	 *
-	 * <https://www.baeldung.com/java-delay-queue>
+	 * Other effects may extend this class and override apply and expire.
 	 *
-	 * Note that Ints.saturatedCast, a method from a Google library, is
-	 * replaced with a Java standard library Math.toIntExact with a fallback
-	 * returning zero (equal to other obj) if an error is thrown.
+	 * @param attr attribute to give, such as Attribute.DOUBLE_JUMP.
+	 * @param steps number of simulation steps the effect lasts.
 	 */
-	public Effect(long delayMs) {
-		this.startTime = System.currentTimeMillis() + delayMs;
+	public Effect(Attribute attr, long steps) {
+		this.attr = attr;
+		this.steps = steps;
 	} /* End constructor */
 
 
 	/**
-	 * Overriden to implement the Delayed object.
-	 *
-	 * Returns milliseconds to delay finish.
+	 * Start the effect on an entity.
 	 */
-	@Override
-	public long getDelay(TimeUnit unit) {
-		long diff = startTime - System.currentTimeMillis();
-		return unit.convert(diff, TimeUnit.MILLISECONDS);
-	} /* End method getDelay */
+	void apply(Entity e) {
+		e.applyAttribute(this.attr);
+	} /* End method apply */
 
 
 	/**
-	 * Overriden to implement the Delayed object.
-	 *
-	 * Compares the difference in time to delay finish between two Effects.
+	 * End the effect on an entity.
 	 */
-	@Override
-	public int compareTo(Delayed o) {
-		try {
-		return Math.toIntExact(
-			this.startTime - ((Effect) o).startTime);
-		} catch (ArithmeticException e) {
-			return 0; 
-		}
-	} /* End method compareTo */
+	void expire(Entity e) {
+		e.removeAttribute(this.attr);
+	} /* End method expire */
+
 
 	/**
-	 * Effects should implement this method to create their functionality.
+	 * Get the number of simulation steps the effect lasts.
 	 */
-	abstract void apply(Entity e);
+	public long getSteps() { return this.steps; }
 
 } /* End class Effect */
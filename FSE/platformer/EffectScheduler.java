@@ -0,0 +1,117 @@
+// ------------------------------------------------------------------------- //
+// The EffectScheduler class applies timed effects to entities and expires   //
+// them once their time in simulation steps is up.                           //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  platformer                                                      //
+// Filename: EffectScheduler.java                                            //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package platformer;
+
+import java.util.PriorityQueue;
+
+public class EffectScheduler {
+
+	/**
+	 * One effect applied to one entity, waiting to expire.
+	 */
+	private static class Timed implements Comparable<Timed> {
+		Entity target; // Entity the effect was applied to
+		Effect effect; // Effect to expire
+		long due;      // Step the effect expires at
+		long order;    // Order the effect was applied in
+
+		Timed(Entity target, Effect effect, long due, long order) {
+			this.target = target;
+			this.effect = effect;
+			this.due = due;
+			this.order = order;
+		} /* End constructor */
+
+		/**
+		 * Sort by step the effect expires at, then by order applied, so
+		 * effects due at the same step always expire in the same order.
+		 */
+		@Override
+		public int compareTo(Timed o) {
+			if (this.due != o.due) { return Long.compare(this.due, o.due); }
+			return Long.compare(this.order, o.order);
+		} /* End method compareTo */
+	} /* End class Timed */
+
+	// Effects of every entity, soonest to expire first
+	private PriorityQueue<Timed> queue = new PriorityQueue<Timed>();
+
+	private long now = 0;   // Current simulation step
+	private long order = 0; // Number of effects applied so far
+
+	/**
+	 * Create an empty EffectScheduler for a level.
+	 *
+	 * Every timed effect of every entity is kept in one shared priority
+	 * queue, ordered by the simulation step it expires at:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/java/util/PriorityQueue.html>
+	 *
+	 * Each step only looks at the head of the queue, so a step where no
+	 * effects expire takes no work, and a step where some expire only
+	 * removes those. Time is counted in simulation steps rather than with
+	 * the system clock, so effects stop counting down whenever the game
+	 * is paused or not being simulated.
+	 */
+	public EffectScheduler() { /* Nothing to set up */ }
+
+
+	/**
+	 * Apply an effect to an entity now, and expire it after its time.
+	 *
+	 * @param target entity to apply the effect to.
+	 * @param effect effect to apply.
+	 */
+	public void apply(Entity target, Effect effect) {
+		effect.apply(target);
+		this.queue.add(new Timed(
+			target, effect, this.now + effect.getSteps(), this.order++
+		));
+	} /* End method apply */
+
+
+	/**
+	 * Advance to the next simulation step, expiring every effect due.
+	 *
+	 * Should be called once per simulation step.
+	 *
+	 * @param step number of the new simulation step.
+	 */
+	public void update(long step) {
+		this.now = step;
+
+		while ((!this.queue.isEmpty()) && (this.queue.peek().due <= step)) {
+			Timed timed = this.queue.poll();
+			timed.effect.expire(timed.target);
+		}
+	} /* End method update */
+
+
+	/**
+	 * Drop every effect without expiring it, such as when a level ends.
+	 *
+	 * @param step simulation step to count from afterwards.
+	 */
+	public void clear(long step) {
+		this.queue.clear();
+		this.now = step;
+	} /* End method clear */
+
+
+	/**
+	 * Get the number of effects that have not expired.
+	 */
+	public int size() { return this.queue.size(); }
+
+} /* End class EffectScheduler */
@@ -85,11 +85,11 @@ public class Enemy extends Entity {
 	 * including coordinate position and collisions.
 	 *
 	 * @param diffT difference in time
-	 * @param bounds Shape representing collision boxes entity should be
+	 * @param bounds grid representing collision boxes entity should be
 	 *               aware of and cannot go into.
 	 */
 	@Override
-	public void update(double diffT, Shape bounds) {
+	public void update(double diffT, CollisionGrid bounds) {
 		super.update(diffT, bounds); // Update tick time
 
 		/* Adjust velY for gravity (if not flying) */
@@ -111,9 +111,10 @@ public class Enemy extends Entity {
 		// Move taking into account collision boxes provided by bounds.
 		// This method is common to all entities.
 		// Apply an adjustment of time per frame and Zoom factor.
+		double zoom = Settings.zoom();
 		super.boundedMove(
-			(int)(diffT * this.xVel * Settings.zoom()),
-			(int)(diffT * this.yVel * Settings.zoom()),
+			(int)(diffT * this.xVel * zoom),
+			(int)(diffT * this.yVel * zoom),
 			bounds
 		);
 
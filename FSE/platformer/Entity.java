@@ -18,7 +18,6 @@ import java.awt.geom.*;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.concurrent.*;
 
 public class Entity {
 
@@ -28,12 +27,8 @@ public class Entity {
 	int coin = 0; // Coins of the entity
 	ArrayList<Attribute> attrs = new ArrayList<Attribute>();
 
-	// DelayQueue for effects
-	// The current effect is the element at head that is being peeked
-	// When the delay is over and the element is removed, it CEASES effect
-	// Effects have not currently been implemented but are present for
-	// extensibility.
-	DelayQueue<Effect> effects = new DelayQueue<Effect>();
+	// Timed effects are kept by the level's EffectScheduler, which gives
+	// and takes away their attributes.
 
 	/* Movement */
 	double xVel   = 0;                  // X velocity of entity
@@ -57,6 +52,15 @@ public class Entity {
 	double clock = 0d;      // Clock for sprite change cycles
 	double tickTime = 30d;  // Time to update one tick cycle
 
+	/* Rendering */
+	double prevX = 0;        // X position before last simulation step
+	double prevY = 0;        // Y position before last simulation step
+	boolean saved = false;   // Whether prevX and prevY have been set
+
+	/* Broadphase */
+	int cell = -1; // Cell of the entity in a SpatialHash (-1 if none)
+	long lastStep = 0; // Simulation step the entity was last updated in
+
 	/**
 	 * Create a new entity.
 	 *
@@ -85,14 +89,6 @@ public class Entity {
 	} /* End constructor */
 
 
-	/**
-	 * Apply a status effect to the entity.
-	 *
-	 * @param effect Effect to apply.
-	 */
-	public void applyStatus(Effect effect) { effects.add(effect); }
-
-
 	/**
 	 * Set the entity as being "dead".
 	 *
@@ -124,6 +120,7 @@ public class Entity {
 		switch (attr) {
 		case DOUBLE_JUMP: // Entity may double-jump
 			jumpLimit = 2;
+			this.attrs.add(attr); // Kept so it can be taken away
 			break;
 		case COIN_1:      // Add one coin to Entity counter
 			coin++;
@@ -140,6 +137,25 @@ public class Entity {
 	} /* End method applyAttribute */
 
 
+	/**
+	 * Take away one attribute given by applyAttribute, such as when a
+	 * timed effect expires.
+	 *
+	 * Attributes given more than once stay until each one is taken away.
+	 * Coins are not attributes kept by the entity, so they cannot be
+	 * taken away.
+	 *
+	 * @param attr attribute to take away.
+	 */
+	public void removeAttribute(Attribute attr) {
+		this.attrs.remove(attr); // Only first one
+
+		if ((attr == Attribute.DOUBLE_JUMP) && !this.attrs.contains(attr)) {
+			jumpLimit = 1; // No more double-jumps
+		}
+	} /* End method removeAttribute */
+
+
 	/**
 	 * Updates the entity's conditions for one frame.
 	 *
@@ -154,10 +170,10 @@ public class Entity {
 	 * of all entities.
 	 *
 	 * @param diffT difference in time
-	 * @param bounds shape representing collision boxes entity should be
+	 * @param bounds grid representing collision boxes entity should be
 	 *               aware of.
 	 */
-	public void update(double diffT, Shape bounds) {
+	public void update(double diffT, CollisionGrid bounds) {
 		/* Update the animation tick */
 		if (this.isMovingLeft() || this.isMovingRight() || this.stationary) {
 			// Update animation tick
@@ -282,101 +298,99 @@ public class Entity {
 
 
 	/**
-	 * Move restricting movement that intersects with shape `bounds`.
+	 * Move restricting movement that intersects with grid `bounds`.
 	 *
-	 * Bounds can be any Shape, but for this program is the Area class:
-	 *     java.awt.geom.Area.
+	 * Bounds are the CollisionGrid of the level, so each check only
+	 * examines the tiles underneath the entity.
 	 *
-	 * Works by gradually moving the entity one coordinate in the x and
-	 * y directions at a time until one of those dimensions hits a bound
-	 * or the specified distance has been covered.
+	 * Works by sweeping the entity's bounding box along the x axis until
+	 * it hits a bound or the specified distance has been covered. The
+	 * grid finds the time of impact against every tile in the path at
+	 * once, rather than moving the entity one coordinate at a time.
 	 *
-	 * Then, it continues moving one coordinate in the other direction until
-	 * it too hits a bound. This method takes into account horizontal
-	 * boundaries of the level as "walls". Passing the lower vertical bound
-	 * of the level (max Y) will mark the entity as being "dead" for collection.
+	 * Then, it sweeps the entity along the y axis in the same way. This
+	 * method takes into account horizontal boundaries of the level as
+	 * "walls". Passing the lower vertical bound of the level (max Y) will
+	 * mark the entity as being "dead" for collection.
 	 *
-	 * This method is the simplest method of collision detection *and* is
-	 * more efficient than checking MANY Shapes (or each tile) individually.
+	 * Hitting a wall turns the entity around, and landing on the ground
+	 * gives back one jump and stops the entity from falling.
 	 *
 	 * @param x integer number of pixels to move in x axis
 	 * @param y integer number of pixels to move in y axis
 	 * @param bounds collision box entity should not enter
 	 */
-	public void boundedMove(int x, int y, Shape bounds) {
+	public void boundedMove(int x, int y, CollisionGrid bounds) {
 		// No movement; return
 		if ((x == 0) && (y == 0)) { return; }
 
-		boolean xReachedLim = (x == 0); // hit boundary in X dimension
-		boolean yReachedLim = (y == 0); // hit boundary in Y dimension
-
-		int xInc = (x > 0) ? 1 : -1; // set x increment by value
-		int yInc = (y > 0) ? 1 : -1; // set y increment by value
-
-		int cnt = 0; // how many increments have passed
-
-		// If count is greater than arbitrarily large number, exit:
-		// error in finding boundary
-		while (cnt < 1000) {
-			// Boundary not reached; requested x distance not reached
-			if (!xReachedLim && cnt < Math.abs(x)) {
-				// Increment player Rectangle x
-				this.bounds.x += xInc;
-
-				// Check for collision
-				if (
-					(bounds.intersects(this.bounds))
-					|| (this.bounds.getMinX() < 0) // X bounds:
-					|| (this.bounds.getMaxX() > Settings.levelWidth())
-				) {
-					// Go back so object is *almost*
-					// colliding, but not actually
-					this.bounds.x -= xInc;
-
-					// Have reached x limit; stop incrementing
-					// on next loop
-					xReachedLim = true;
-
-					// Entity should now be moving in the
-					// opposite direction.
-					this.right = !this.right;
-				}
+		// Limit very large movements (falling for a long time)
+		x = Math.max(-Settings.E_MAX_MOVE, Math.min(Settings.E_MAX_MOVE, x));
+		y = Math.max(-Settings.E_MAX_MOVE, Math.min(Settings.E_MAX_MOVE, y));
+
+		/* Move in X dimension */
+		if (x != 0) {
+			// Furthest distance before hitting a tile or a wall
+			int moved = bounds.sweep(this.bounds, x, true);
+			int wall = this.wallLimit(x > 0, Settings.levelWidth());
+			if (Math.abs(moved) > wall) {
+				moved = (x > 0) ? wall : -wall;
+			}
+
+			this.bounds.x += moved;
+
+			if (moved != x) {
+				// Hit boundary; entity should now be moving in
+				// the opposite direction.
+				this.right = !this.right;
 			}
-			// Boundary not reached; requested y distance not reached
-			if (!yReachedLim && cnt < Math.abs(y)) {
-				// Increment player Rectangle y
-				this.bounds.y += yInc;
-
-				// Check for collision
-				if (bounds.intersects(this.bounds)) {
-					this.bounds.y -= yInc;
-					yReachedLim = true;
-
-					// Reached boundary while falling
-					// Decrement jump counter
-					// Stop falling
-					if (y > 0) {
-						if (this.jumpCnt > 0) {
-							this.jumpCnt--;
-						}
+		}
+
+		/* Move in Y dimension */
+		if (y != 0) {
+			int moved = bounds.sweep(this.bounds, y, false);
+
+			this.bounds.y += moved;
+
+			if (moved != y) {
+				// Reached boundary while falling
+				// Decrement jump counter
+				// Stop falling
+				if (y > 0) {
+					if (this.jumpCnt > 0) {
+						this.jumpCnt--;
 					}
-					this.yVel = 0;
 				}
+				this.yVel = 0;
 			}
-			cnt++; // Increment movement
-
-			// Both boundaries have been reached OR distance moved
-			// is satisfied
-			if (
-				(xReachedLim && yReachedLim)
-				|| ((cnt >= Math.abs(x)) && (cnt >= Math.abs(y)))
-			) {
-				return; // Exit loop
-			}
-		} /* End while loop */
+		}
 	} /* End method boundedMove */
 
 
+	/**
+	 * Find how many pixels the entity can move sideways before passing
+	 * the left or right edge of the level.
+	 *
+	 * @param right true if moving right, false if moving left.
+	 * @param levelWidth width of the level in pixels.
+	 * @return number of whole pixels the entity can move.
+	 */
+	private int wallLimit(boolean right, double levelWidth) {
+		if (right) {
+			// Already past the left edge; cannot move at all
+			if (this.bounds.getMinX() + 1 < 0) { return 0; }
+
+			return (int)Math.max(0, Math.floor(
+				levelWidth - this.bounds.getMaxX()
+			));
+		}
+		// Already past the right edge; cannot move at all
+		if (this.bounds.getMaxX() - 1 > levelWidth) { return 0; }
+
+		return (int)Math.max(0, Math.floor(this.bounds.getMinX()));
+	} /* End method wallLimit */
+
+
 	/**
 	 * Check if the entity should be "dead".
 	 *
@@ -428,6 +442,52 @@ public class Entity {
 	public int getCentreY() { return (int) this.bounds.getCenterY(); }
 
 
+	/**
+	 * Remember the position of the entity before a simulation step.
+	 *
+	 * The game is simulated in fixed steps but drawn whenever the screen
+	 * is ready, so frames fall between two steps. Keeping the position
+	 * before the last step lets frames draw the entity part way between
+	 * that position and the current one.
+	 */
+	public void savePosition() {
+		this.prevX = this.bounds.x;
+		this.prevY = this.bounds.y;
+		this.saved = true;
+	} /* End method savePosition */
+
+
+	/**
+	 * Move the entity sideways along with the level it is in.
+	 *
+	 * Its position before the last step moves too, so frames drawn
+	 * between two steps do not slide across the screen.
+	 *
+	 * @param dx pixels to move right (negative for left).
+	 */
+	public synchronized void shiftX(double dx) {
+		this.bounds.x += dx;
+		this.prevX += dx;
+	} /* End method shiftX */
+
+
+	/**
+	 * Return X/Y position of the entity origin to draw in a frame.
+	 *
+	 * @param alpha part of the next simulation step that has passed,
+	 *              from 0 (previous position) to 1 (current position).
+	 */
+	public double getRenderX(double alpha) {
+		if (!this.saved) { return this.bounds.x; } // No previous step
+		return this.prevX + (this.bounds.x - this.prevX) * alpha;
+	} /* End method getRenderX */
+
+	public double getRenderY(double alpha) {
+		if (!this.saved) { return this.bounds.y; } // No previous step
+		return this.prevY + (this.bounds.y - this.prevY) * alpha;
+	} /* End method getRenderY */
+
+
 	/**
 	 * Set the acceleration and velocities of the entity manually.
 	 *
@@ -21,12 +21,15 @@ import java.awt.image.BufferedImage;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Random;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import javax.swing.*;
 import java.net.URL;
 import java.io.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 public class Game extends JPanel implements ActionListener {
 
@@ -54,30 +57,42 @@ public class Game extends JPanel implements ActionListener {
 	// (Enumeration length of EntityType
 	SpriteHandler[] handleEntities = new SpriteHandler[EntityType.values().length];
 
-	// Store previous zoom of level to determine if new graphics assets
-	// need to be loaded.
-	double prevZoom = 0;
+	// Loads spritesheets and levels in the background
+	AssetLoader loader = null;
 
 	// Smoothly darken levels
 	double darkenLvlCnt = 0;
 
 	/* Level management */
 	Level lvl = null; // Stores a level loaded into the game
-	// Store entities in the level (moving sprites)
-	ArrayList<Entity> entities = new ArrayList<Entity>();
+	Simulation sim = null; // Player and entities of the running level
+	WorldStream stream = null; // Chunks of the endless level, if loaded
 
 	/* Initial loading screen */
 	Font font;                   // Font used for all text
+	Font fontScore;              // Font of score (derived once)
+	Font fontMsg;                // Font of end message (derived once)
+	Font fontHud;                // Font of profiler overlay
 	Menu menu;                   // Menu displayed at start
 
 	/* Game */
 	Camera cam = null;           // Camera draws game elements onto JPanel
-	boolean running = false;     // Whether or not a level is currently running
-	private double clock = 0d;   // Timer to keep track of constant game events
-	boolean endSequence = false; // Begin exiting level and displaying end msg
-	Player player = null;        // Keep track of player
+	volatile boolean running = false; // Whether or not a level is currently running
+	private boolean paused = false; // Whether simulation is paused (simLock)
+
+	// Profiler overlay, only used in the Swing thread
+	private boolean showProfile = false; // Whether the overlay is shown
+	private String[] profileLines = new String[0]; // Lines of the overlay
+	private long profileTime = 0; // When the lines were last updated (ns)
 	Renderer renderer;           // Renderer provides separate game loop thread
 
+	// Simulation steps and painting take turns through this lock
+	private final Object simLock = new Object();
+	private double alpha = 0d; // Part of the next step passed (for drawing)
+
+	// Whether a frame has been asked for but not painted yet
+	private AtomicBoolean framePending = new AtomicBoolean(false);
+
 	Frame frame;                 // Store outer window containing Game.
 
 	/**
@@ -116,6 +131,9 @@ public class Game extends JPanel implements ActionListener {
 		// Adjust Camera viewport based on resized window
 		this.frame.addComponentListener(new ResizeListener());
 
+		// Pass keyboard input to the player of the running level
+		this.addKeyListener(new InputListener());
+
 		/* Set JPanel settings */
 		this.setPreferredSize(new Dimension(Settings.resX(), Settings.resY()));
 		this.setFocusable(true);
@@ -125,6 +143,9 @@ public class Game extends JPanel implements ActionListener {
 			// Font loading failed, use default
 			this.font = new Font(Font.DIALOG, Font.PLAIN, 18);
 		}
+		this.fontScore = this.font.deriveFont(40f);
+		this.fontMsg = this.font.deriveFont(Settings.FONT_LARGE);
+		this.fontHud = new Font(Font.MONOSPACED, Font.PLAIN, (int)Settings.FONT_HUD);
 
 		/* Load music */
 		// If music loading fails, all sound related functionality will
@@ -142,6 +163,10 @@ public class Game extends JPanel implements ActionListener {
 
 		this.showMenu();              // Show title screen menu
 
+		// Start loading the first level on the menu straight away
+		this.loader = new AssetLoader(this.menu);
+		this.preload();
+
 		// Space the menu between two "horizontal glues" to centre it.
 		this.add(Box.createHorizontalGlue());
 		this.add(this.menu);
@@ -221,117 +246,169 @@ public class Game extends JPanel implements ActionListener {
 	} /* End class ResizeListener */
 
 
+	/**
+	 * Passes keyboard input to the player of the running level.
+	 *
+	 * Keys are received in the Swing thread while the level is simulated
+	 * in the game loop thread, so input is only passed on between two
+	 * simulation steps.
+	 */
+	class InputListener extends KeyAdapter {
+
+		/**
+		 * Called whenever a key is pressed.
+		 */
+		@Override
+		public void keyPressed(KeyEvent e) {
+			synchronized (Game.this.simLock) {
+				if (!Game.this.running) { return; }
+
+				if (e.getKeyCode() == Settings.KEY_PAUSE) {
+					// Stop or resume simulating the level
+					Game.this.paused = !Game.this.paused;
+					return;
+				}
+				if (e.getKeyCode() == Settings.KEY_PROFILE) {
+					// Show or hide the profiler overlay; showing it
+					// starts measuring
+					Game.this.showProfile = !Game.this.showProfile;
+					if (Game.this.showProfile) { Profiler.setEnabled(true); }
+					return;
+				}
+				Game.this.sim.press(e.getKeyCode());
+			}
+		} /* End method keyPressed */
+
+		/**
+		 * Called whenever a key is released.
+		 */
+		@Override
+		public void keyReleased(KeyEvent e) {
+			synchronized (Game.this.simLock) {
+				if (Game.this.running) { Game.this.sim.release(e.getKeyCode()); }
+			}
+		} /* End method keyReleased */
+
+	} /* End class InputListener */
+
+
 	/**
 	 * Listen for menu button-actions and action commands to change the
 	 * Game's state.
 	 *
 	 * The start button of the main menu is tied to this method; pressing
-	 * it starts the game via this method. Between the time a level is loaded
-	 * there is a small wait, which this method notifies the user of with
-	 * the Menu.setDescription method.
+	 * it starts the game via this method. Picking a level or zoom on the
+	 * menu starts loading it in the background right away, so it is
+	 * often ready by the time the start button is pressed.
+	 *
+	 * Loading is done with a SwingWorker, which runs in a background
+	 * thread and then starts the level in the Swing thread, so the
+	 * window does not freeze:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/javax/swing/SwingWorker.html>
 	 *
 	 * @param event Event to be processed
 	 */
 	@Override
 	public void actionPerformed(ActionEvent event) {
+		// Level or zoom picked; get it ready
+		if (event.getActionCommand() == "select") {
+			this.preload();
+			return;
+		}
+
 		// Not start button; return
 		if (!(event.getActionCommand() == "start")) { return; }
 
 		// Give indicator to user that game is loading before level
 		// shows
 		this.menu.setDescription("Loading . . .");
+		this.menu.setStartEnabled(false); // Only start once
+
+		final String name = this.menu.getCurrentLevel();
+		final double zoom = this.menu.getCurrentZoom();
+
+		new SwingWorker<String, Void>() {
+			/**
+			 * Load graphics and level in the background.
+			 *
+			 * @return error message, or null if successful.
+			 */
+			@Override
+			protected String doInBackground() {
+				if (!loadGraphics(zoom)) { return "Error loading graphics."; }
+				if (!loadLevel(name, zoom)) { return "Error loading level."; }
+				return null;
+			} /* End method doInBackground */
+
+			/**
+			 * Start the level in the Swing thread once loaded.
+			 */
+			@Override
+			protected void done() {
+				menu.setStartEnabled(true);
+
+				String error;
+				try {
+					error = this.get();
+				} catch (Exception e) {
+					error = "Error loading level.";
+				}
 
-		try {
-			// Try to load levels and start the game.
-			// Load in the Swing AWT loop to run in the same thread
-			// as the painting methods.
-			SwingUtilities.invokeLater(new Runnable() {
-				public void run() {
-					startGame(); // Load levels
+				if (error != null) {
+					menu.setDescription(error); // Error condition
+					return;
 				}
-			});
-		} catch (Exception err) {} // If fail, ignore button / command
+				startGame(zoom);
+			} /* End method done */
+		}.execute();
 	} /* End method actionPerformed */
 
 
+	/**
+	 * Start loading the level and zoom picked on the menu.
+	 */
+	private void preload() {
+		if (this.loader == null) { return; } // Game is still being created
+
+		String name = this.menu.getCurrentLevel();
+		if (name == null) { return; } // No levels to pick from
+
+		if (name.equals(Settings.ENDLESS_NAME)) {
+			// Endless levels are made when started; only load graphics
+			this.loader.preloadSprites(this.menu.getCurrentZoom());
+			return;
+		}
+		this.loader.preload(name, this.menu.getCurrentZoom());
+	} /* End method preload */
+
+
 	/**
 	 * Load graphics from the resources directory.
 	 *
 	 * This loads all the graphics from spritesheets configured for this
-	 * program.
+	 * program, through the AssetLoader. Spritesheets of recently used
+	 * zooms are kept, so they are only loaded once.
+	 *
+	 * Waits for loading to finish, so should not be called from the Swing
+	 * thread.
 	 *
+	 * @param zoom zoom of the graphics.
 	 * @return true if operation completed successfully, else false.
 	 */
-	public boolean loadGraphics() {
-		// There are three files for three different tile zoom levels.
-		// Load the appropriate one for the seelected zoom.
-		String tilePath = "/resources/tiles-100.png";
-		if (Settings.zoom() == 2) {
-			tilePath = "/resources/tiles-200.png";
-		} else if (Settings.zoom() == 1.5) {
-			tilePath = "/resources/tiles-150.png";
+	public boolean loadGraphics(double zoom) {
+		AssetLoader.Sprites graphics;
+		try {
+			graphics = this.loader.getSprites(zoom).get();
+		} catch (Exception e) {
+			return false; // Loading was interrupted
 		}
-
-		// Load background tiles
-		// Current object must be passed to reference its classpath
-		// and get the correct file.
-		this.handleTile = SpriteHandler.createFromFile(
-			this, tilePath,
-			Settings.UNIT, Settings.UNIT,
-			Settings.SEP, Settings.SEP,
-			Settings.zoom(), true
-		);
 		// If loading fails for any graphics object, return fail signal
-		if (this.handleTile == null) { return false; }
-
-		// Load player animations
-		// P_WIDTH and P_HEIGHT, as well as all subsequent WIDTH and
-		// HEIGHT constants, refer to the heights of each tile within
-		// the spritesheet.
-		this.handleP1 = SpriteHandler.createFromFile(
-			this, "/resources/p1.png",
-			Settings.P_WIDTH, Settings.P_HEIGHT, Settings.zoom()
-		);
-		if (this.handleP1 == null) { return false; }
-
-		// Load entity SpriteHandler under their location stored by
-		// the EntityTypes enumeration.
-
-		// Load slimes
-		this.handleEntities[EntityType.SLIME.costume] = SpriteHandler.createFromFile(
-			this, "/resources/slime.png",
-			Settings.S_WIDTH, Settings.S_HEIGHT, Settings.zoom()
-		);
-		if (this.handleEntities[EntityType.SLIME.costume] == null) { return false; }
-
-		// Load endgoal
-		this.handleEntities[EntityType.FLAG.costume] = SpriteHandler.createFromFile(
-			this, "/resources/flags.png",
-			Settings.UNIT, Settings.UNIT, Settings.zoom()
-		);
-		if (this.handleEntities[EntityType.FLAG.costume] == null) { return false; }
-
-		// Load item resources
-		this.handleEntities[EntityType.G_COIN.costume] = SpriteHandler.createFromFile(
-			this, "/resources/items.png",
-			Settings.UNIT, Settings.UNIT, Settings.zoom()
-		);
-		if (this.handleEntities[EntityType.G_COIN.costume] == null) { return false; }
-
-		// Load torches
-		this.handleEntities[EntityType.TORCH.costume] = SpriteHandler.createFromFile(
-			this, "/resources/torch.png",
-			Settings.UNIT, Settings.UNIT, Settings.zoom()
-		);
-		if (this.handleEntities[EntityType.TORCH.costume] == null) { return false; }
-
-		// Load flies
-		this.handleEntities[EntityType.FLY.costume] = SpriteHandler.createFromFile(
-			this, "/resources/fly.png",
-			Settings.F_WIDTH, Settings.F_HEIGHT, Settings.zoom()
-		);
-		if (this.handleEntities[EntityType.FLY.costume] == null) { return false; }
+		if (graphics == null) { return false; }
 
+		this.handleTile = graphics.tiles;
+		this.handleP1 = graphics.player;
+		this.handleEntities = graphics.entities;
 		return true;
 	} /* End method loadGraphics */
 
@@ -351,42 +428,44 @@ public class Game extends JPanel implements ActionListener {
 		// If registering any sound fails, then it will return false
 		// The AND operation of true and false is false, so any
 		// one fail will lead to the whole method returning false.
+		// Every sound is still registered; registering only finds the
+		// file, and sounds are read once they are played.
 
 		// Load default theme song
-		status = status && SoundHandler.get().register(
+		status = SoundHandler.get().register(
 			"THEME_DEFAULT",
 			"theme_default.wav"
-		);
+		) && status;
 
 		// Load title theme song
-		status = status && SoundHandler.get().register(
+		status = SoundHandler.get().register(
 			"THEME_TITLE",
 			"theme_title.wav"
-		);
+		) && status;
 
 		// Load coin-grab sound
-		status = status && SoundHandler.get().register(
+		status = SoundHandler.get().register(
 			"SOUND_COIN",
 			"sound_coin.wav"
-		);
+		) && status;
 
 		// Load jumping sound
-		status = status && SoundHandler.get().register(
+		status = SoundHandler.get().register(
 			"SOUND_JUMP",
 			"sound_jump.wav"
-		);
+		) && status;
 
 		// Load sizzle sound
-		status = status && SoundHandler.get().register(
+		status = SoundHandler.get().register(
 			"SOUND_SIZZLE",
 			"sound_sizzle.wav"
-		);
+		) && status;
 
 		// Load sound of player being hit
-		status = status && SoundHandler.get().register(
+		status = SoundHandler.get().register(
 			"SOUND_HIT",
 			"sound_hit.wav"
-		);
+		) && status;
 
 		return status; // Return success or failure
 	} /* End method loadMusic */
@@ -399,41 +478,74 @@ public class Game extends JPanel implements ActionListener {
 	 * When loading level data, all collision boxes are calculated from
 	 * the raw pixels of the tiles and whether or not they are transparent.
 	 *
-	 * Therefore, this method will take time.
+	 * Therefore, this method will take time. Recently used levels are
+	 * kept by the AssetLoader, and only copied for each new game.
+	 *
+	 * Waits for loading to finish, so should not be called from the Swing
+	 * thread.
+	 *
+	 * The level Settings.ENDLESS_NAME is not a file, but an endless level
+	 * with a new seed every time; see loadEndless.
 	 *
 	 * @param path the path of the level FROM the resources directory,
 	 *             ie. "level.lvl" NOT "/resources/level.lvl"
-	 * @param biome the biome / "look" of the level.
+	 * @param zoom zoom of the level.
 	 * @return true if completed successfully, else false.
 	 */
-	public boolean loadLevel(String path) {
-		if (this.handleTile == null) { return false; } // pics not loaded
+	public boolean loadLevel(String path, double zoom) {
+		// Stop building chunks of an endless level loaded before
+		if (this.stream != null) {
+			this.stream.close();
+			this.stream = null;
+		}
+		if (path.equals(Settings.ENDLESS_NAME)) { return this.loadEndless(zoom); }
+
+		Level loaded;
+		try {
+			loaded = this.loader.getLevel(path, zoom).get();
+		} catch (Exception e) {
+			return false; // Loading was interrupted
+		}
+		// An error has occured when the level class loaded
+		// the level; return false
+		if (loaded == null) { return false; }
 
 		// Only keep track of one level at a time.
-		this.lvl = new Level(
-			this.handleTile,     // Tile spritesheet
-			this.handleEntities, // Entity array spritesheet
-			Settings.zoom()      // Zoom level of Settings
+		this.lvl = loaded;
+		return true;
+	} /* End method loadLevel */
+
+
+	/**
+	 * Load the start of an endless level.
+	 *
+	 * Endless levels are made by the LevelGenerator from a random seed,
+	 * with the biome picked from the seed. Only a window of chunks around
+	 * the player is loaded; the WorldStream builds the chunks after it in
+	 * the background while the level is played.
+	 *
+	 * Graphics must already be loaded with loadGraphics. Waits for the
+	 * window to be built, so should not be called from the Swing thread.
+	 *
+	 * @param zoom zoom of the level.
+	 * @return true if completed successfully, else false.
+	 */
+	public boolean loadEndless(double zoom) {
+		long seed = new Random().nextLong();
+		this.stream = new WorldStream(
+			seed, LevelGenerator.biomeOf(seed),
+			this.handleTile, this.handleEntities, zoom
 		);
 
-		// Have the level class load the file specified at path
-		if (!this.lvl.loadFile("/resources/" + path)) {
-			// An error has occured when the level class loaded
-			// the level; return false
+		Level loaded = this.stream.createLevel();
+		if (loaded == null) {
+			this.stream.close();
+			this.stream = null;
 			return false;
 		}
-
-		// Change background based on biome of level
-		switch (this.lvl.getBiome()) {
-		case ROCKY:
-			this.setBackground(Settings.COLOUR_ROCK);
-			break;
-		default:
-			this.setBackground(Settings.COLOUR_SKY);
-		}
-
+		this.lvl = loaded;
 		return true;
-	} /* End method loadLevel */
+	} /* End method loadEndless */
 
 
 	/**
@@ -442,7 +554,8 @@ public class Game extends JPanel implements ActionListener {
 	 * This method searches the /resources/ path (in the same directory
 	 * as the classes) for level files. Level files contain information for
 	 * one level to be loaded each using the `Level` class, and end in a
-	 * file extension defined as Settings.FILE_EXT.
+	 * file extension defined as Settings.FILE_EXT, or
+	 * Settings.FILE_EXT_COMPILED for levels made by the LevelCompiler.
 	 *
 	 * The menu levelpicker uses this method to get all levels.
 	 *
@@ -455,27 +568,46 @@ public class Game extends JPanel implements ActionListener {
 		try {
 			// Use Utilities method to walk through all files in
 			// relative resource path
-			files = Utilities.findFiles(
+			files = new ArrayList<Path>(Utilities.findFiles(
 				url.toURI(),      // Uniform Resource Identifier
 				Settings.FILE_EXT // File extension as string
-			);
+			));
+			files.addAll(Utilities.findFiles(
+				url.toURI(),               // Uniform Resource Identifier
+				Settings.FILE_EXT_COMPILED // Compiled levels
+			));
 		} catch (Exception e) {
 			// Error, simply exit
 			return null;
 		}
 
-		// Create array to return
-		String[] ret = new String[files.size()];
+		// Names of levels by name without extension, so a level kept both
+		// as text and compiled by the LevelCompiler is only listed once
+		HashMap<String, String> names = new HashMap<String, String>();
 
 		// Convert Path objects to Strings for display
 		for (int i = 0; i < files.size(); i++) {
 			// Display only the name for the file menu, no need
 			// for full path
-			ret[i] = files.get(i).getFileName().toString();
+			String name = files.get(i).getFileName().toString();
+			String stem = name.substring(0, name.lastIndexOf('.'));
+
+			// Compiled level loads faster, so is picked over the text one
+			if (name.endsWith("." + Settings.FILE_EXT_COMPILED)
+				|| !names.containsKey(stem)) {
+				names.put(stem, name);
+			}
 		}
 
+		// Create array to return
+		String[] ret = names.values().toArray(new String[names.size()]);
+
 		Arrays.sort(ret); // Sort names of levels into alphabetical order
 
+		// Endless level is picked like any other, after the files
+		ret = Arrays.copyOf(ret, ret.length + 1);
+		ret[ret.length - 1] = Settings.ENDLESS_NAME;
+
 		return ret;
 	} /* End method getLevelPaths */
 
@@ -489,14 +621,24 @@ public class Game extends JPanel implements ActionListener {
 		this.running = false;
 		this.renderer.interrupt();
 		this.renderer = null;
-		this.entities.clear();
+		this.sim.clear();
+		if (this.stream != null) {
+			this.stream.close(); // Stop building chunks
+			this.stream = null;
+		}
 
 		// Signal for garbage-collect (may not happen) to clear old
 		// level debris
 		System.gc();
 
-		this.menu.setDescription("Play again?");
-		this.showMenu();
+		// Levels end from the game loop thread, but the menu must be
+		// changed in the Swing thread.
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				menu.setDescription("Play again?");
+				showMenu();
+			}
+		});
 	} /* End method exitGame */
 
 
@@ -519,53 +661,31 @@ public class Game extends JPanel implements ActionListener {
 
 
 	/**
-	 * Start the selected level.
+	 * Start the loaded level.
 	 *
-	 * Start the selected level by loading it from a file, along with
-	 * image resources.
+	 * The level and image resources must already be loaded with
+	 * loadGraphics and loadLevel. Called in the Swing thread.
+	 *
+	 * @param currZoom zoom the level was loaded at.
 	 */
-	public void startGame() {
-		// Set zoom of global Settings to current menu zoom
-		double currZoom = this.menu.getCurrentZoom(); // Set current zoom
-		Settings.get().setZoom(currZoom);
-
-		// Load graphics resources only if needed (if zoom has changed)
-		if (currZoom != prevZoom) {
-			prevZoom = currZoom;
-			// Zoom has changed; reload graphics
-			if (!this.loadGraphics()) {
-				// Error condition:
-				this.menu.setDescription("Error loading graphics.");
-				return;
-			}
-		}
-
-		// Load selected level of menu from file
-		if (!this.loadLevel(this.menu.getCurrentLevel())) {
-			// Error loading level
-			this.menu.setDescription("Error loading level.");
-			return;
+	public void startGame(double currZoom) {
+		// Change background based on biome of level
+		switch (this.lvl.getBiome()) {
+		case ROCKY:
+			this.setBackground(Settings.COLOUR_ROCK);
+			break;
+		default:
+			this.setBackground(Settings.COLOUR_SKY);
 		}
-		// Store level width and height
-		Settings.get().setLevelWidth(this.lvl.getWidth());
-		Settings.get().setLevelHeight(this.lvl.getHeight());
-
-		// Create player in level's starting position
-		Point2D pSpawn = this.lvl.getPlayerStart();
-		this.player = new Player(
-			pSpawn.getX(),
-			pSpawn.getY(),
-			handleP1,
-			null // Do not apply any attributes yet
-		);
-		// Connect KeyListener of game to player
-		this.addKeyListener(player);
 
-		// Load entities from level
-		this.entities.addAll(this.lvl.getEntities());
+		// Create player and entities of level; this also sets the zoom
+		// and level size of global Settings to those of the level
+		this.sim = new Simulation(this.lvl, handleP1, handleEntities);
+		this.sim.setStream(this.stream);
 
 		// Create camera from level
-		this.cam = new Camera(this.lvl.getLevel(this.handleTile, Settings.zoom()));
+		this.cam = new Camera(this.lvl, this.handleTile);
+		this.paused = false;
 
 		// Close menu
 		this.menu.setVisible(false);
@@ -575,19 +695,29 @@ public class Game extends JPanel implements ActionListener {
 
 		// Create new running loop
 		SoundHandler.get().playSound("THEME_DEFAULT", true);
+		this.alpha = 0d;
+		this.running = true;            // Set level as running
 		this.renderer = new Renderer(); // Create separate game thread
 		this.renderer.start();          // Start thread
-		this.running = true;            // Set level as running
-		this.endSequence = false;       // Disable end sequence (game over screen)
 	} /* End method startGame */
 
 
 	/**
-	 * Provide a separate render thread.
+	 * Provide a separate game loop thread.
 	 *
-	 * The Renderer inner class provides a separate rendering thread for
-	 * each level as a main game loop. It handles updating positions of
-	 * items and redrawing frames without blocking the main Game class.
+	 * The Renderer inner class provides a separate thread for each level
+	 * as a main game loop. The level is simulated in fixed steps of
+	 * Settings.STEP, so physics are the same no matter how fast frames
+	 * are drawn: time that has passed is added to a "lag", and whole steps
+	 * are taken out of it. Frames are then asked of Swing, and the thread
+	 * sleeps until the next frame is due according to Settings.maxFps().
+	 *
+	 * Frames usually fall between two steps. The part of a step left in
+	 * the lag is kept as `alpha` so entities can be drawn between their
+	 * last two positions. Based on the "Fix Your Timestep!" article by
+	 * Glenn Fiedler (no code was directly taken):
+	 *
+	 * <https://gafferongames.com/post/fix_your_timestep/>
 	 */
 	private class Renderer extends Thread {
 
@@ -598,29 +728,40 @@ public class Game extends JPanel implements ActionListener {
 		public void run() {
 			long prevT = System.nanoTime(); // Previous time (ns)
 			long currT;                     // Current time (ns)
-
-			double diffT;                   // Difference in time
+			double lag = 0d;                // Time not yet simulated
 
 			// While level is active
 			while (running && (!this.isInterrupted())) {
 				currT = System.nanoTime();
-				diffT = (currT - prevT) / Settings.NANOS; // Difference in time
+				lag += (currT - prevT) / Settings.NANOS; // Difference in time
 				prevT = currT;
 
-				try {
-				// Invoke from the Swing thread for best practices
-				// Use a Runnable to update values and render to screen
-				SwingUtilities.invokeAndWait(new Updater(diffT));
-				} catch (Exception e) {
-					if (e instanceof InterruptedException) {
-						// Exit thread; level stopped
-						Thread.currentThread().interrupt();
-						return;
+				// If the game falls far behind (such as when the
+				// window is dragged), skip time instead of trying
+				// to catch up all at once.
+				lag = Math.min(lag, Settings.MAX_LAG);
+
+				synchronized (simLock) {
+					// Time passed while paused is not simulated
+					if (paused) { lag = Math.min(lag, alpha * Settings.STEP); }
+
+					// Simulate as many whole steps as have passed
+					while ((lag >= Settings.STEP) && running) {
+						sim.savePositions();
+						update(Settings.STEP);
+						lag -= Settings.STEP;
 					}
-					// Not interrupted; other exception
-					// Just redraw frame
-					continue;
+					alpha = lag / Settings.STEP;
 				}
+
+				// Ask for a frame only if the last one was painted.
+				// Swing paints it in its own thread.
+				if (!framePending.getAndSet(true)) { repaint(); }
+
+				// Sleep until next frame
+				long wait = (long)(1000000000d / Settings.maxFps())
+					- (System.nanoTime() - currT);
+				if (wait > 0) { LockSupport.parkNanos(wait); }
 			}
 		} /* End method run */
 
@@ -628,208 +769,49 @@ public class Game extends JPanel implements ActionListener {
 
 
 	/**
-	 * Provide a Runnable object for Swing's AWT queue.
-	 *
-	 * Although the main game loop on a separate thread is a good time keeper,
-	 * Java Swing best practices are to update graphical elements in the Java
-	 * AWT (base rendering library) thread. This runnable allows the main
-	 * game loop to pass methods onto that thread for updating.
-	 */
-	private class Updater implements Runnable {
-
-		private double diffT;
-
-		/**
-		 * Updater runs the actual update and redraw functions.
-		 *
-		 * SwingUtilities requires a runnable object to execute.
-		 */
-		public Updater(double diffT) {
-			super();
-			this.diffT = diffT;
-		} /* End constructor */
-
-
-		/**
-		 * Invoked by Swing Utilities each frame through Renderer.
-		 */
-		@Override
-		public void run() {
-			update(diffT); // Update data of all level elements
-			repaint();     // Display all level elements
-		} /* End implemented method run */
-
-	} /* End class Updater */
-
-
-	/**
-	 * Perform updates for each frame.
+	 * Take one simulation step of the running level.
 	 *
-	 * Updates only apply to entities as level tiles are pre-calculated
-	 * during level load.
+	 * The player and entities are stepped by the Simulation; the Game only
+	 * exits the level once its end message has been shown long enough.
 	 */
 	public void update(double diffT) {
 		// Do not update Game level main loop if Game is not running
 		if (!this.running) { return; }
 
-		/* Update clock */
-		this.clock += diffT; // add diffT to the clock
-		if (this.clock > Settings.TIME_END && endSequence) {
+		long start = Profiler.start();
+		long bytes = Profiler.allocated();
+		this.sim.update(diffT);
+		Profiler.end(Profiler.Section.STEP, start, bytes);
+		if (this.sim.isOver()) {
 			// After player dies or wins, there is a countdown until
 			// level exits to main menu
 			exitGame();
 		}
-
-		/* Get areas to use to update entities */
-		Shape bounds = this.lvl.getBounds();       // get impassable areas
-		Shape climbable = this.lvl.getClimbable(); // get climbable areas
-		Shape deadly = this.lvl.getDeadly();       // get deadly areas
-
-		/* Update player */
-		// Update player first, then other entities in order of precedence
-		if (!player.isAlive() && !this.endSequence) {
-			// Do not keep resetting end sequence if already set
-			this.beginEndSequence();
-		} else {
-			player.update(diffT, bounds, climbable, deadly);
-		}
-
-		// Check if player hit item box (dynamically create items)
-		checkHittingBox();
-
-		/* Update other entities */
-		updateEntities(diffT, bounds, deadly);
 	} /* End method update */
 
 
 	/**
-	 * Begin end screen of either victory or death for player.
-	 *
-	 * Resets the clock of the level to display the message for n ticks.
-	 * The update loop will exit to the main menu after that time.
-	 */
-	public void beginEndSequence() {
-		// Already set; no need to do it again
-		if (this.endSequence) { return; }
-
-		this.clock = 0d;
-		this.endSequence = true;
-	} /* End method beginEndSequence */
-
-
-	/**
-	 * Update all entities loaded in the main game loop.
+	 * Find the entities of the running level touching an area.
 	 *
-	 * @param diffT "difference in time" time adjustment per frame.
-	 * @param bounds level collision boxes for entities to be aware of and
-	 *               which entities should not go into.
-	 * @param deadly level collision boxes for areas deadly to entities.
+	 * @param area area of the level to search, in pixels.
+	 * @param out list to store found entities in; it is cleared first.
 	 */
-	public void updateEntities(double diffT, Shape bounds, Shape deadly) {
-		Entity ent; // Store the current entity during iteration.
-
-		// Store entities to be removed in an array
-		int toRemoveCnt = 0;
-		Entity[] toRemove = new Entity[this.entities.size()];
-
-		// Iterate over all entities in the level
-		for (int i = 0; i < this.entities.size(); i++) {
-			ent = this.entities.get(i); // get entity from level
-			ent.update(diffT, bounds);  // update all entities
-
-			if ((!ent.isAlive()) || deadly.intersects(ent.getBounds())) {
-				// If Entity is touching deadly area or
-				// Entity is dead, remove from level
-				toRemove[toRemoveCnt++] = ent;
-				continue; // Skip to next entity
-			}
-
-			// `instanceof` checks if Entity is further a member
-			// of a specific Entity subclass
-			if (ent instanceof Enemy) {
-				/* Handle enemy-specific updates */
-				// If player touching enemy, player dies.
-				if (player.isTouching(ent.getBounds())) {
-					// Play hitting sound
-					SoundHandler.get().playSound("SOUND_HIT", false);
-					player.die();
-					this.beginEndSequence(); // End level
-				}
-			} else if (ent instanceof Flag) {
-				/* Handle flag-specific updates */
-				if (player.isTouching(ent.getBounds())) {
-					// Player win condition
-					this.beginEndSequence(); // End level
-				}
-			} else if (ent instanceof Item) {
-				/* Handle item-specific updates */
-				Item item = (Item) ent;
-				if (item.isTouching(player.getBounds())) {
-					// Play application sound
-					SoundHandler.get().playSound("SOUND_COIN", false);
-					// Apply item attribute to player
-					player.applyAttribute(item.getAttribute());
-					// Item is expended
-					toRemove[toRemoveCnt++] = item;
-				}
-			}
-		}
-
-		// Remove any items queued
-		if (toRemoveCnt > 0) {
-			for (Entity removable : toRemove) {
-				// Removable may be empty
-				if (removable != null) {
-					this.entities.remove(removable);
-				}
-			}
-		}
-	} /* End method updateEntities */
-
-
-	/**
-	 * Check if player is hitting any item boxes of the level.
-	 *
-	 * Itemboxes randomly generate rewards for the player in the form
-	 * of items appearing on top of them.
-	 */
-	public void checkHittingBox() {
-		// Get locations of all boxes currently in the level.
-		SpecBounds boxes = this.lvl.getSpecBounds();
-
-		// Check if box contains point right above player's head.
-		// If box does contain point, remove box
-		// Settings.P_SPACE contains location above player's head used
-		Area boxLocation = (Area) boxes.containsRemove(
-			player.getCentreX(),
-			player.getPoint().getY() - Settings.P_SPACE
-		);
-
-		if (boxLocation == null) {
-			// Player didn't hit any box with head; exit
+	public void getEntitiesNear(Rectangle2D area, ArrayList<Entity> out) {
+		if (this.sim == null) {
+			out.clear(); // No level has been started
 			return;
 		}
-		// Player did hit item box. Get and store coordinates from box.
-		Rectangle2D bounds = boxLocation.getBounds2D();
-
-		// Create random coin at location
-		entities.add(Item.randomCoin(
-			bounds.getX(), // X coordinates
-
-			// Y coordinate is equal to one unit higher than item box
-			bounds.getY() - (Settings.UNIT * Settings.zoom()),
-			handleEntities[EntityType.G_COIN.costume] // Coin sprite
-		));
-	} /* End method checkHittingBox */
+		this.sim.getEntitiesNear(area, out);
+	} /* End method getEntitiesNear */
 
 
 	/**
 	 * Draw frame with updated positions.
 	 *
 	 * Uses the Camera class to scale and adjust camera angles with
-	 * entities. The Camera will first use the image of the level it already
-	 * has calculated as a base, then layer on top entities, the player,
-	 * a potential darkening effect, and any text to display.
+	 * entities. The Camera will first draw the visible tiles of the level
+	 * as a base, then layer on top entities, the player, a potential
+	 * darkening effect, and any text to display.
 	 *
 	 * The darkening effect is controlled by the Biome; currently, the
 	 * "Rocky" or cave biome has the darkening effect. Darkening allows
@@ -844,11 +826,33 @@ public class Game extends JPanel implements ActionListener {
 	@Override
 	public void paint(Graphics g) {
 		super.paint(g);
+		this.framePending.set(false); // Ready for next frame
+
 		// No need to paint if game is not running
 		if (!this.running) { return; }
 
-		Graphics2D g2d = (Graphics2D) g;
+		Profiler.frame();
+		long start = Profiler.start();
+		long bytes = Profiler.allocated();
 
+		// Do not draw while a simulation step is half done
+		synchronized (this.simLock) {
+			if (this.running) { this.paintLevel((Graphics2D) g); }
+		}
+		Profiler.end(Profiler.Section.PAINT, start, bytes);
+
+		if (this.showProfile) { this.paintProfile((Graphics2D) g); }
+	} /* End method paint */
+
+
+	/**
+	 * Draw the level, entities and messages of one frame.
+	 *
+	 * @param g2d Graphics2D object of the Game.
+	 */
+	private void paintLevel(Graphics2D g2d) {
+		Player player = this.sim.getPlayer();
+		boolean endSequence = this.sim.isEndSequence();
 		boolean darken = false;
 		if ((this.lvl.getBiome() == Biome.ROCKY) && (!endSequence)) {
 			// Darken the level only if the biome is underground
@@ -860,24 +864,48 @@ public class Game extends JPanel implements ActionListener {
 		}
 
 		// Amount to darken level by (Max 255 per colour space
-		double darkenLvl = (int)(Math.min(this.clock, 255));
+		double darkenLvl = (int)(Math.min(this.sim.getClock(), 255));
 
-		// Display level and entities (With potential darkening effect)
-		cam.beam(g2d, player, entities, Settings.zoom(), darken, darkenLvl);
+		// Display level and awake entities (With potential darkening effect)
+		cam.beam(
+			g2d, player, this.sim.getActive(), Settings.zoom(), darken, darkenLvl,
+			this.alpha
+		);
 
 		// Show scores
-		cam.showScore(g2d, this.font.deriveFont(40f), player.getCoins());
+		cam.showScore(g2d, this.fontScore, player.getCoins());
 
 		String msg;
 		if (endSequence) {
 			// Change message based on player status
-			if (this.player.isAlive()) {
+			if (player.isAlive()) {
 				msg = "You win!";
 			} else {
 				msg = "Game over!";
 			}
-			cam.showMsg(g2d, this.font.deriveFont(Settings.FONT_LARGE), msg);
+			cam.showMsg(g2d, this.fontMsg, msg);
+		} else if (this.paused) {
+			cam.showMsg(g2d, this.fontMsg, "Paused");
 		}
-	} /* End method paint */
+	} /* End method paintLevel */
+
+
+	/**
+	 * Draw the profiler overlay.
+	 *
+	 * The lines are only worked out again every Settings.PROFILE_REFRESH
+	 * nanoseconds, so they can be read and making them does not slow
+	 * down every frame.
+	 *
+	 * @param g2d Graphics2D object of the Game.
+	 */
+	private void paintProfile(Graphics2D g2d) {
+		long now = System.nanoTime();
+		if (now - this.profileTime > Settings.PROFILE_REFRESH) {
+			this.profileLines = Profiler.summary();
+			this.profileTime = now;
+		}
+		this.cam.showProfile(g2d, this.fontHud, this.profileLines);
+	} /* End method paintProfile */
 
 } /* End class Game */
@@ -0,0 +1,493 @@
+// ------------------------------------------------------------------------- //
+// The GeometryCache class saves collision geometry worked out from the      //
+// pixels of spritesheets and levels, so later launches can skip that work.  //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  platformer                                                      //
+// Filename: GeometryCache.java                                              //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package platformer;
+
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+public class GeometryCache {
+
+	/* Kinds of saved shapes */
+	private static final byte NO_SHAPE = 0; // null
+	private static final byte RECT     = 1; // Rectangle2D
+	private static final byte AREA     = 2; // Area, saved as its outline
+
+	/**
+	 * Not meant to be instantiated; all methods are static.
+	 *
+	 * Finding the bounds of tiles means looking at every pixel of a
+	 * spritesheet, and building the collision grids of a level means
+	 * looking at every tile. Neither changes unless the spritesheet or
+	 * level file changes, so the results are saved in a folder in the
+	 * user's home directory (Settings.GEO_DIR).
+	 *
+	 * Each file is named after a SHA-256 hash of the contents of the
+	 * spritesheet or level, the zoom and anything else the geometry
+	 * depends on. Changing any of them changes the name, so old files
+	 * are never loaded by mistake:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/java/security/MessageDigest.html>
+	 *
+	 * The cache is only a shortcut. If the folder cannot be used, files
+	 * are silently not saved or loaded, and the geometry is worked out
+	 * from the images and tiles every time.
+	 */
+	private GeometryCache() { /* No need to instantiate */ }
+
+
+	/**
+	 * Find the SHA-256 hash of some bytes.
+	 *
+	 * @param data bytes to hash.
+	 * @return hash as a hexadecimal string.
+	 */
+	public static String digest(byte[] data) {
+		return digest(ByteBuffer.wrap(data));
+	} /* End method digest */
+
+
+	/**
+	 * Find the SHA-256 hash of the remaining bytes of a buffer.
+	 *
+	 * The position of `data` is not changed.
+	 *
+	 * @param data bytes to hash.
+	 * @return hash as a hexadecimal string.
+	 */
+	public static String digest(ByteBuffer data) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform must support SHA-256
+			throw new IllegalStateException(e);
+		}
+		md.update(data.duplicate());
+
+		StringBuilder hex = new StringBuilder();
+		for (byte b : md.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	} /* End method digest */
+
+
+	/**
+	 * Combine the parts geometry depends on into the key of a file.
+	 *
+	 * @param parts hashes and settings the geometry depends on.
+	 * @return key of the cache file.
+	 */
+	public static String key(Object... parts) {
+		StringBuilder joined = new StringBuilder();
+		joined.append(Settings.GEO_VERSION);
+		for (Object part : parts) { joined.append('/').append(part); }
+
+		return digest(joined.toString().getBytes(StandardCharsets.UTF_8));
+	} /* End method key */
+
+
+	/**
+	 * Load the bounds and shapes of every tile of a spritesheet.
+	 *
+	 * Arrays must already be the size of the spritesheet; they are only
+	 * filled in if the whole file is loaded.
+	 *
+	 * @param key key of the spritesheet (see key).
+	 * @param bounds rectangular bounds of tiles, by [row][col].
+	 * @param shapes exact shapes of tiles, by (row * cols + col).
+	 * @return true if loaded, false if not cached.
+	 */
+	public static boolean loadSheet(
+		String key, Rectangle2D.Double[][] bounds, Area[] shapes
+	) {
+		try (DataInputStream in = open(key)) {
+			if (in == null) { return false; } // Not cached
+
+			int rows = in.readInt();
+			int cols = in.readInt();
+			if ((rows != bounds.length) || (rows * cols != shapes.length)) {
+				return false; // Different layout
+			}
+
+			// Read everything before changing the arrays
+			Rectangle2D.Double[][] newBounds = new Rectangle2D.Double[rows][cols];
+			Area[] newShapes = new Area[shapes.length];
+			for (int row = 0; row < rows; row++) {
+				for (int col = 0; col < cols; col++) {
+					newBounds[row][col] = new Rectangle2D.Double(
+						in.readDouble(), in.readDouble(),
+						in.readDouble(), in.readDouble()
+					);
+					Shape shape = readShape(in);
+					if (shape != null) { newShapes[row * cols + col] = (Area)shape; }
+				}
+			}
+
+			for (int row = 0; row < rows; row++) {
+				System.arraycopy(newBounds[row], 0, bounds[row], 0, cols);
+			}
+			System.arraycopy(newShapes, 0, shapes, 0, shapes.length);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			return false; // Unreadable; worked out again instead
+		}
+	} /* End method loadSheet */
+
+
+	/**
+	 * Save the bounds and shapes of every tile of a spritesheet.
+	 *
+	 * @param key key of the spritesheet (see key).
+	 * @param bounds rectangular bounds of tiles, by [row][col].
+	 * @param shapes exact shapes of tiles, by (row * cols + col).
+	 */
+	public static void saveSheet(
+		String key, Rectangle2D.Double[][] bounds, Area[] shapes
+	) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			int rows = bounds.length;
+			int cols = (rows == 0) ? 0 : bounds[0].length;
+			out.writeInt(rows);
+			out.writeInt(cols);
+
+			for (int row = 0; row < rows; row++) {
+				for (int col = 0; col < cols; col++) {
+					Rectangle2D.Double rect = bounds[row][col];
+					out.writeDouble(rect.x);
+					out.writeDouble(rect.y);
+					out.writeDouble(rect.width);
+					out.writeDouble(rect.height);
+					writeShape(out, shapes[row * cols + col]);
+				}
+			}
+		} catch (IOException e) {
+			return; // Cannot happen when writing to memory
+		}
+		save(key, bytes);
+	} /* End method saveSheet */
+
+
+	/**
+	 * Load the collision grids of a level.
+	 *
+	 * Grids must be empty and already the size of the level. Tiles of the
+	 * same type share one shape, like when the level is built.
+	 *
+	 * @param key key of the level (see key).
+	 * @param grids empty grids to fill, in the order they were saved.
+	 * @return true if loaded, false if not cached.
+	 */
+	public static boolean loadGrids(String key, CollisionGrid... grids) {
+		try (DataInputStream in = open(key)) {
+			if (in == null) { return false; } // Not cached
+
+			// Shapes shared by the tiles of the grids
+			Shape[] table = new Shape[in.readInt()];
+			for (int i = 0; i < table.length; i++) {
+				table[i] = readShape(in);
+			}
+
+			// Read everything before changing the grids
+			byte[][] cells = new byte[grids.length][];
+			int[][] parts = new int[grids.length][];
+			if (in.readInt() != grids.length) { return false; }
+
+			for (int g = 0; g < grids.length; g++) {
+				if ((in.readInt() != grids[g].getRowNum())
+					|| (in.readInt() != grids[g].getColNum())
+				) {
+					return false; // Different size of level
+				}
+				cells[g] = new byte[grids[g].getRowNum() * grids[g].getColNum()];
+				in.readFully(cells[g]);
+
+				// Shape of each PARTIAL cell, in order of cells
+				parts[g] = new int[in.readInt()];
+				for (int i = 0; i < parts[g].length; i++) {
+					parts[g][i] = in.readInt();
+				}
+			}
+
+			for (int g = 0; g < grids.length; g++) {
+				int cols = grids[g].getColNum();
+				int part = 0;
+
+				for (int i = 0; i < cells[g].length; i++) {
+					if (cells[g][i] == CollisionGrid.SOLID) {
+						grids[g].setSolid(i / cols, i % cols);
+					} else if (cells[g][i] == CollisionGrid.PARTIAL) {
+						grids[g].setShape(
+							i / cols, i % cols, table[parts[g][part++]]
+						);
+					}
+				}
+			}
+			return true;
+		} catch (IOException | RuntimeException e) {
+			return false; // Unreadable; worked out again instead
+		}
+	} /* End method loadGrids */
+
+
+	/**
+	 * Save the collision grids of a level.
+	 *
+	 * @param key key of the level (see key).
+	 * @param grids grids to save, in the order they will be loaded.
+	 */
+	public static void saveGrids(String key, CollisionGrid... grids) {
+		// Give each shape one number; shapes are shared by tiles of the
+		// same type, so each is saved once.
+		IdentityHashMap<Shape, Integer> ids = new IdentityHashMap<Shape, Integer>();
+		ArrayList<Shape> table = new ArrayList<Shape>();
+
+		ByteArrayOutputStream gridBytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(gridBytes)) {
+			out.writeInt(grids.length);
+
+			for (CollisionGrid grid : grids) {
+				int rows = grid.getRowNum();
+				int cols = grid.getColNum();
+				out.writeInt(rows);
+				out.writeInt(cols);
+
+				ArrayList<Integer> parts = new ArrayList<Integer>();
+				for (int row = 0; row < rows; row++) {
+					for (int col = 0; col < cols; col++) {
+						byte cell = grid.getCell(row, col);
+						out.writeByte(cell);
+						if (cell != CollisionGrid.PARTIAL) { continue; }
+
+						Shape shape = grid.getPart(row, col);
+						Integer id = ids.get(shape);
+						if (id == null) {
+							id = table.size();
+							ids.put(shape, id);
+							table.add(shape);
+						}
+						parts.add(id);
+					}
+				}
+
+				out.writeInt(parts.size());
+				for (int id : parts) { out.writeInt(id); }
+			}
+		} catch (IOException e) {
+			return; // Cannot happen when writing to memory
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(table.size());
+			for (Shape shape : table) { writeShape(out, shape); }
+			gridBytes.writeTo(out);
+		} catch (IOException e) {
+			return; // Cannot happen when writing to memory
+		}
+		save(key, bytes);
+	} /* End method saveGrids */
+
+
+	/**
+	 * Write a shape as its kind, followed by its data.
+	 *
+	 * Rectangles are four numbers. Areas are written as the segments of
+	 * their outline, given by a PathIterator:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/java/awt/geom/PathIterator.html>
+	 */
+	private static void writeShape(DataOutputStream out, Shape shape)
+		throws IOException
+	{
+		if (shape == null) {
+			out.writeByte(NO_SHAPE);
+		} else if (shape instanceof Rectangle2D) {
+			Rectangle2D rect = (Rectangle2D)shape;
+			out.writeByte(RECT);
+			out.writeDouble(rect.getX());
+			out.writeDouble(rect.getY());
+			out.writeDouble(rect.getWidth());
+			out.writeDouble(rect.getHeight());
+		} else {
+			// Store segments first, as their number is not known yet
+			ByteArrayOutputStream segBytes = new ByteArrayOutputStream();
+			DataOutputStream segs = new DataOutputStream(segBytes);
+			double[] coords = new double[6];
+			int cnt = 0;
+
+			PathIterator it = shape.getPathIterator(null);
+			int winding = it.getWindingRule();
+			for (; !it.isDone(); it.next()) {
+				int type = it.currentSegment(coords);
+				segs.writeByte(type);
+				for (int i = 0; i < points(type) * 2; i++) {
+					segs.writeDouble(coords[i]);
+				}
+				cnt++;
+			}
+
+			out.writeByte(AREA);
+			out.writeByte(winding);
+			out.writeInt(cnt);
+			segBytes.writeTo(out);
+		}
+	} /* End method writeShape */
+
+
+	/**
+	 * Read a shape written by writeShape.
+	 */
+	private static Shape readShape(DataInputStream in) throws IOException {
+		byte kind = in.readByte();
+
+		if (kind == NO_SHAPE) { return null; }
+		if (kind == RECT) {
+			return new Rectangle2D.Double(
+				in.readDouble(), in.readDouble(),
+				in.readDouble(), in.readDouble()
+			);
+		}
+		if (kind != AREA) { throw new IOException("Unknown shape"); }
+
+		Path2D.Double path = new Path2D.Double(in.readByte());
+		int cnt = in.readInt();
+		double[] c = new double[6];
+		for (int seg = 0; seg < cnt; seg++) {
+			int type = in.readByte();
+			for (int i = 0; i < points(type) * 2; i++) { c[i] = in.readDouble(); }
+
+			switch (type) {
+			case PathIterator.SEG_MOVETO:
+				path.moveTo(c[0], c[1]);
+				break;
+			case PathIterator.SEG_LINETO:
+				path.lineTo(c[0], c[1]);
+				break;
+			case PathIterator.SEG_QUADTO:
+				path.quadTo(c[0], c[1], c[2], c[3]);
+				break;
+			case PathIterator.SEG_CUBICTO:
+				path.curveTo(c[0], c[1], c[2], c[3], c[4], c[5]);
+				break;
+			case PathIterator.SEG_CLOSE:
+				path.closePath();
+				break;
+			default:
+				throw new IOException("Unknown segment");
+			}
+		}
+		return new Area(path);
+	} /* End method readShape */
+
+
+	/**
+	 * Get the number of points of a type of path segment.
+	 */
+	private static int points(int type) {
+		switch (type) {
+		case PathIterator.SEG_MOVETO:
+		case PathIterator.SEG_LINETO:
+			return 1;
+		case PathIterator.SEG_QUADTO:
+			return 2;
+		case PathIterator.SEG_CUBICTO:
+			return 3;
+		default:
+			return 0; // SEG_CLOSE
+		}
+	} /* End method points */
+
+
+	/**
+	 * Get the path of the cache file of a key.
+	 */
+	private static Path pathOf(String key) {
+		return Paths.get(
+			System.getProperty("user.home"), Settings.GEO_DIR,
+			key + "." + Settings.FILE_EXT_GEO
+		);
+	} /* End method pathOf */
+
+
+	/**
+	 * Open a cache file and check its header.
+	 *
+	 * @return stream positioned after the header, or null if the file
+	 *         does not exist or is not a cache file of this version.
+	 */
+	private static DataInputStream open(String key) throws IOException {
+		Path path = pathOf(key);
+		if (!Files.isRegularFile(path)) { return null; }
+
+		DataInputStream in = new DataInputStream(
+			new BufferedInputStream(Files.newInputStream(path))
+		);
+		if ((in.readInt() != Settings.GEO_MAGIC)
+			|| (in.readShort() != Settings.GEO_VERSION)
+		) {
+			in.close();
+			return null;
+		}
+		return in;
+	} /* End method open */
+
+
+	/**
+	 * Write a cache file with its header.
+	 *
+	 * The file is written under a temporary name and then moved into
+	 * place, so another game loading at the same time never reads half
+	 * of a file.
+	 */
+	private static void save(String key, ByteArrayOutputStream bytes) {
+		Path path = pathOf(key);
+		Path tmp = null;
+		try {
+			Files.createDirectories(path.getParent());
+			tmp = Files.createTempFile(path.getParent(), key, ".tmp");
+
+			try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(tmp))
+			)) {
+				out.writeInt(Settings.GEO_MAGIC);
+				out.writeShort(Settings.GEO_VERSION);
+				bytes.writeTo(out);
+			}
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | SecurityException e) {
+			// Cache cannot be written; nothing is lost
+			try {
+				if (tmp != null) { Files.deleteIfExists(tmp); }
+			} catch (IOException ignored) { /* Nothing more to do */ }
+		}
+	} /* End method save */
+
+} /* End class GeometryCache */
@@ -71,8 +71,25 @@ public class Item extends Entity {
 	 * @return Item created.
 	 */
 	public static Item randomCoin(double x, double y, SpriteHandler costumes) {
-		Random rand = new Random();
+		return randomCoin(x, y, costumes, new Random());
+	} /* End method randomCoin */
+
 
+	/**
+	 * Create a random coin for itemboxes, picked with a given Random.
+	 *
+	 * A Random with a fixed seed always picks the same coins, so that a
+	 * Simulation with scripted input plays out the same way every time.
+	 *
+	 * @param x real-x position of the coin to appear.
+	 * @param y real-y position of coin to appear.
+	 * @param costumes SpriteHandler with image resources to use.
+	 * @param rand random number generator to pick the coin with.
+	 * @return Item created.
+	 */
+	public static Item randomCoin(
+		double x, double y, SpriteHandler costumes, Random rand
+	) {
 		// Use random integer to determine coin
 		int choice = rand.nextInt(100);
 
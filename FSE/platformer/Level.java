@@ -16,7 +16,15 @@ package platformer;
 import java.net.URL;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.awt.image.BufferedImage;
 import java.awt.*;
 import java.awt.geom.*;
@@ -36,9 +44,11 @@ public class Level {
 	 *      | 2 |
 	 *      | 3 |
 	 *
-	 * Tiles are NOT stored with images, only data.
+	 * Tiles are NOT stored with images, only data. Each tile is stored as
+	 * its character from the level file (0 for no tile); the TileMap of
+	 * the character is shared and found with TileMap.fromChar.
 	 */
-	private TileMap[][] map = null;
+	private byte[][] map = null;
 
 	// Stores total rows and cols of the level
 	private int rows = 0;
@@ -50,9 +60,11 @@ public class Level {
 	// Store entities contained within the level
 	private ArrayList<Entity> entities = new ArrayList<Entity>();
 
-	private Area bounds = new Area();            // Store normal bounds
-	private Area climbable = new Area();         // Store climbable locations
-	private Area deadly = new Area();            // Store deadly locations
+	// Collision data is stored per tile; the grids are created once the
+	// dimensions of the level are known.
+	private CollisionGrid bounds;                // Store normal bounds
+	private CollisionGrid climbable;             // Store climbable locations
+	private CollisionGrid deadly;                // Store deadly locations
 	private SpecBounds boxes = new SpecBounds(); // Store special boxes
 	private SpriteHandler tiles;                 // Store tile images
 
@@ -62,8 +74,8 @@ public class Level {
 	// Biome (general appearance) of the level
 	private Biome biome = Biome.GRASSY; // Default biome is GRASSY
 
-	// Levels can be rendered in high quality because their image is
-	// only processed once.
+	// Levels can be rendered in high quality because each part of their
+	// image is only processed once.
 
 	// Enable antialiasing for Graphics2D object
 	private RenderingHints enableAntiAlias = new RenderingHints(
@@ -78,6 +90,22 @@ public class Level {
 
 	private double zoom; // Zoom of the level (determined at creation)
 
+	// Characters of every tile as loaded, one row after another; kept so
+	// copies of the level can create their own entities.
+	private byte[] codes = null;
+
+	// Key of the level's collision grids in the GeometryCache; null if
+	// they are not cached
+	private String geoKey = null;
+
+	// Whether the collision grids were loaded from the GeometryCache, so
+	// tiles do not need to be added to them
+	private boolean gridsLoaded = false;
+
+	// Columns the level has been shifted left by while streaming (see
+	// `shift`), so anything drawn from its tiles can tell it has moved
+	private long shifted = 0;
+
 	/**
 	 * The Level class holds the data for one level.
 	 *
@@ -93,9 +121,77 @@ public class Level {
 		this.tiles = tiles;                   // Spritesheet for all tiles
 		this.entityCostumes = handleEntities; // Costumes for all entities
 		this.zoom = zoom;                     // Zoom of level
+
+		// Empty collision grids until a file is loaded
+		this.createGrids(0, 0);
+	} /* End constructor */
+
+
+	/**
+	 * Create a fresh copy of a loaded level, ready to be played.
+	 *
+	 * Tiles and collision grids never change while a level is played, so
+	 * the copy shares them with `other`. Item boxes and entities do
+	 * change, so the copy has its own, with every entity at its start.
+	 * This makes a copy much faster than loading the file again.
+	 *
+	 * @param other loaded level to copy.
+	 */
+	public Level(Level other) {
+		this.tiles = other.tiles;
+		this.entityCostumes = other.entityCostumes;
+		this.zoom = other.zoom;
+		this.biome = other.biome;
+
+		// Shared tile data
+		this.rows = other.rows;
+		this.cols = other.cols;
+		this.map = other.map;
+		this.codes = other.codes;
+		this.bounds = other.bounds;
+		this.climbable = other.climbable;
+		this.deadly = other.deadly;
+
+		// Own item boxes and player start
+		this.boxes = new SpecBounds(other.boxes);
+		this.pCoords = new Point2D.Double(other.pCoords.x, other.pCoords.y);
+
+		if (this.codes == null) { return; } // Level not loaded
+
+		// Create new entities at their starting positions
+		Band band = new Band();
+		for (int row = 0; row < this.rows; row++) {
+			for (int col = 0; col < this.cols; col++) {
+				TileMap tile = TileMap.fromChar(
+					this.biome, this.codes[row * this.cols + col]
+				);
+				if (tile.getEntityType() == EntityType.NONE) { continue; }
+
+				// Same position as when the level was loaded
+				int x = (int)(0 + (col * Settings.UNIT) * this.zoom);
+				int y = (int)(0 + (row * Settings.UNIT) * this.zoom);
+				this.setEntity(tile, x, y, band);
+			}
+		}
+		this.entities.addAll(band.entities);
 	} /* End constructor */
 
 
+	/**
+	 * Create empty collision grids for a level of a certain size.
+	 *
+	 * @param rows number of rows in the level.
+	 * @param cols number of columns in the level.
+	 */
+	private void createGrids(int rows, int cols) {
+		double unit = Settings.UNIT * this.zoom; // Size of one tile
+
+		this.bounds = new CollisionGrid(rows, cols, unit);
+		this.climbable = new CollisionGrid(rows, cols, unit);
+		this.deadly = new CollisionGrid(rows, cols, unit);
+	} /* End method createGrids */
+
+
 	/**
 	 * Load a level from a file.
 	 *
@@ -119,13 +215,21 @@ public class Level {
 	 *
 	 * See the Biome enumeration in Biome.java for more details.
 	 *
+	 * Files ending in Settings.FILE_EXT_COMPILED are binary levels, and
+	 * are loaded with loadCompiled instead.
+	 *
 	 * @param path Path of the level file (relative from class)
 	 * @return true if success, false if error encountered (failed to load)
 	 */
 	public boolean loadFile(String path) {
+		if (path.toLowerCase().endsWith("." + Settings.FILE_EXT_COMPILED)) {
+			return this.loadCompiled(path);
+		}
+
 		// Get the file path
 		URL url = this.getClass().getResource(path);
 		BufferedReader stdin;
+		byte[] data; // Contents of the file
 
 		// Temporary container for each line in the file
 		ArrayList<String> lines = new ArrayList<String>();
@@ -138,11 +242,11 @@ public class Level {
 			// Read with the UTF-8 charset
 			// Use InputStreamReader to specify charset:
 			// InputStreamReader (InputStream in, Charset cs)
+			// The whole file is read first so that it can be hashed
+			data = Files.readAllBytes(Paths.get(url.toURI()));
 			stdin = new BufferedReader(
 				new InputStreamReader(
-					new FileInputStream(
-						new File(url.toURI())
-					),
+					new ByteArrayInputStream(data),
 					Charset.forName("UTF-8")
 				)
 			);
@@ -179,29 +283,355 @@ public class Level {
 		this.cols = colCnt; // Record number of columns
 
 		// Create single array representing all tiles in level.
-		this.map = new TileMap[rowCnt][colCnt];
+		this.map = new byte[rowCnt][colCnt];
+		this.createGrids(rowCnt, colCnt); // Collision data of the tiles
 
-		// Create tile data for each tile
+		// Characters of every tile, one row after another
+		byte[] codes = new byte[rowCnt * colCnt];
 		for (int row = 0; row < this.rows; row++) {
 			ln = lines.get(row); // Re-get line
 
 			// Use individual characters to build level
 			for (int col = 0; col < ln.length(); col++) {
-				this.setBlock(
-					row, col,
-
-					// Generate tile info based on character.
-					TileMap.fromChar(
-						this.biome,
-						ln.codePointAt(col)
-					)
-				);
+				int c = ln.codePointAt(col);
+				if (c > 127) { c = ' '; } // Not a level character; air
+				codes[row * colCnt + col] = (byte)c;
 			}
 		}
+
+		// Create tile data for each tile
+		this.geoKey = this.findKey(GeometryCache.digest(data));
+		this.build(codes);
 		return true; // Success
 	} /* End method loadFile */
 
 
+	/**
+	 * Load a level from a binary file made by the LevelCompiler.
+	 *
+	 * See LevelCompiler.compile for the layout of the file. The file is
+	 * mapped into memory with a FileChannel rather than read, and tiles
+	 * are read straight out of it one byte at a time:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/java/nio/channels/FileChannel.html>
+	 *
+	 * No lines are made, and tiles are set from the shared TileMaps.
+	 *
+	 * @param path Path of the level file (relative from class)
+	 * @return true if success, false if error encountered (failed to load)
+	 */
+	public boolean loadCompiled(String path) {
+		URL url = this.getClass().getResource(path);
+		if (url == null) { return false; } // File does not exist
+
+		ByteBuffer buf; // Contents of the file
+		try (FileChannel channel = FileChannel.open(
+			Paths.get(url.toURI()), StandardOpenOption.READ
+		)) {
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (Exception e) {
+			return false; // In event of error, return error boolean
+		}
+
+		int rowCnt;
+		int colCnt;
+		int entityCnt;
+		try {
+			/* Read header */
+			if (buf.getInt() != Settings.LVLB_MAGIC) { return false; }
+			if (buf.getShort() != Settings.LVLB_VERSION) { return false; }
+
+			char biomeCode = (char)(buf.get() & 0xFF);
+			rowCnt = buf.getInt();
+			colCnt = buf.getInt();
+			entityCnt = buf.getInt();
+
+			// Empty or cut off levels are not allowed
+			if ((rowCnt <= 0) || (colCnt <= 0) || (entityCnt < 0)) {
+				return false;
+			}
+			if ((long)entityCnt * 9 + (long)rowCnt * colCnt > buf.remaining()) {
+				return false;
+			}
+			this.loadBiome(biomeCode);
+		} catch (BufferUnderflowException e) {
+			return false;
+		}
+
+		// No more chance of error, actually change class attributes
+		this.rows = rowCnt; // Record number of rows
+		this.cols = colCnt; // Record number of columns
+
+		this.map = new byte[rowCnt][colCnt];
+		this.createGrids(rowCnt, colCnt); // Collision data of the tiles
+
+		/* Read entity table */
+		int[] entityCodes = new int[entityCnt];
+		int[] entityCells = new int[entityCnt];
+		for (int i = 0; i < entityCnt; i++) {
+			int c = buf.get() & 0x7F;
+			int row = buf.getInt();
+			int col = buf.getInt();
+
+			entityCodes[i] = c;
+			entityCells[i] = -1; // Outside of level; ignored
+			if ((row >= 0) && (row < rowCnt) && (col >= 0) && (col < colCnt)) {
+				entityCells[i] = row * colCnt + col;
+			}
+		}
+
+		/* Read tiles */
+		// Tiles are copied out of the file at once, then entities are
+		// put back into their tiles.
+		byte[] codes = new byte[rowCnt * colCnt];
+		buf.get(codes);
+		for (int i = 0; i < entityCnt; i++) {
+			if (entityCells[i] >= 0) {
+				codes[entityCells[i]] = (byte)entityCodes[i];
+			}
+		}
+
+		// Create tile data for each tile
+		buf.rewind();
+		this.geoKey = this.findKey(GeometryCache.digest(buf));
+		this.build(codes);
+		return true; // Success
+	} /* End method loadCompiled */
+
+
+	/**
+	 * Load a level from the characters of every tile, such as a chunk made
+	 * by the LevelGenerator.
+	 *
+	 * Nothing is read from a file, so the collision grids are not cached.
+	 *
+	 * @param biome biome of the level.
+	 * @param rows number of rows in the level.
+	 * @param cols number of columns in the level.
+	 * @param codes characters of every tile, one row after another.
+	 * @return true if success, false if the level is empty or `codes` does
+	 *         not hold every tile.
+	 */
+	public boolean loadCodes(Biome biome, int rows, int cols, byte[] codes) {
+		if ((rows <= 0) || (cols <= 0) || (codes.length != rows * cols)) {
+			return false;
+		}
+
+		this.biome = biome;
+		this.rows = rows;
+		this.cols = cols;
+
+		this.map = new byte[rows][cols];
+		this.createGrids(rows, cols); // Collision data of the tiles
+
+		this.geoKey = null;
+		this.build(codes);
+		return true; // Success
+	} /* End method loadCodes */
+
+
+	/**
+	 * Stream a chunk into the right of the level, dropping as many columns
+	 * from its left.
+	 *
+	 * Used by endless levels, which only keep a window of columns around
+	 * the player. Rather than growing, the level is moved under the
+	 * player: every tile, collision grid and item box is shifted left by
+	 * the width of the chunk, and the chunk's tiles, item boxes and
+	 * entities are copied into the columns freed on the right. The level
+	 * never changes size, so nothing sized to it must be made again.
+	 *
+	 * The chunk should be loaded in the background beforehand; this only
+	 * copies arrays and moves shapes, so it is quick enough to call
+	 * between two simulation steps.
+	 *
+	 * Entities are not moved, as the Simulation holds entities (such as
+	 * coins from item boxes) that the level does not. Entities of the
+	 * level not in `kept` are forgotten, and the chunk's entities are
+	 * moved into place and added.
+	 *
+	 * @param chunk loaded level with as many rows and at most as many
+	 *              columns as this level.
+	 * @param kept entities still in the level, already moved left by the
+	 *             width of the chunk.
+	 * @return true if success, false if the level is not loaded or the
+	 *         chunk does not fit.
+	 */
+	public boolean shift(Level chunk, ArrayList<Entity> kept) {
+		if ((this.map == null) || (chunk.map == null)) { return false; }
+		if ((chunk.rows != this.rows) || (chunk.cols > this.cols)) {
+			return false;
+		}
+
+		int n = chunk.cols;            // Columns added and dropped
+		int keep = this.cols - n;      // Columns moved left
+		double dx = chunk.getWidth();  // Pixels moved left
+
+		/* Tiles */
+		for (int row = 0; row < this.rows; row++) {
+			System.arraycopy(this.map[row], n, this.map[row], 0, keep);
+			System.arraycopy(chunk.map[row], 0, this.map[row], keep, n);
+
+			int start = row * this.cols;
+			System.arraycopy(this.codes, start + n, this.codes, start, keep);
+			System.arraycopy(chunk.codes, row * n, this.codes, start + keep, n);
+		}
+
+		/* Collision data */
+		this.bounds.shift(chunk.bounds);
+		this.climbable.shift(chunk.climbable);
+		this.deadly.shift(chunk.deadly);
+
+		this.boxes.shift(-dx);
+		chunk.boxes.shift(this.getWidth() - dx);
+		this.boxes.addAll(chunk.boxes);
+
+		/* Entities */
+		this.entities.retainAll(kept);
+		for (Entity ent : chunk.entities) {
+			ent.shiftX(this.getWidth() - dx);
+			this.entities.add(ent);
+		}
+
+		this.shifted += n;
+		return true;
+	} /* End method shift */
+
+
+	/**
+	 * Find the key of the level's collision grids in the GeometryCache.
+	 *
+	 * Grids depend on the level file, and on the tile shapes and zoom
+	 * they were made with.
+	 *
+	 * @param digest hash of the contents of the level file.
+	 * @return key, or null if the tiles' geometry is not cached.
+	 */
+	private String findKey(String digest) {
+		if (this.tiles.getKey() == null) { return null; }
+
+		return GeometryCache.key(digest, this.tiles.getKey(), this.zoom);
+	} /* End method findKey */
+
+
+	/**
+	 * Entities and item boxes found in a band of rows of the level, in the
+	 * order they were found.
+	 */
+	private class Band {
+		ArrayList<Entity> entities = new ArrayList<Entity>();
+		ArrayList<Shape> boxes = new ArrayList<Shape>();
+		Point2D.Double player = null; // Start of player, if found
+
+		/**
+		 * Add everything found in a later band to the end of this band.
+		 */
+		void append(Band next) {
+			this.entities.addAll(next.entities);
+			this.boxes.addAll(next.boxes);
+			if (next.player != null) { this.player = next.player; }
+		} /* End method append */
+	} /* End class Band */
+
+
+	/**
+	 * Build the tiles of one band of rows, splitting the band in two if it
+	 * has more than Settings.LOAD_BAND rows.
+	 */
+	private class BandTask extends RecursiveTask<Band> {
+		private static final long serialVersionUID = 1L; // Never serialized
+
+		private byte[] codes; // Characters of every tile in the level
+		private int rowMin;   // First row of the band
+		private int rowMax;   // Row after the last row of the band
+
+		BandTask(byte[] codes, int rowMin, int rowMax) {
+			this.codes = codes;
+			this.rowMin = rowMin;
+			this.rowMax = rowMax;
+		} /* End constructor */
+
+		@Override
+		protected Band compute() {
+			if (this.rowMax - this.rowMin > Settings.LOAD_BAND) {
+				// Build both halves at the same time, then join them
+				// in order of rows
+				int mid = (this.rowMin + this.rowMax) / 2;
+				BandTask top = new BandTask(this.codes, this.rowMin, mid);
+				BandTask bottom = new BandTask(this.codes, mid, this.rowMax);
+
+				top.fork();
+				Band rest = bottom.compute();
+				Band band = top.join();
+				band.append(rest);
+				return band;
+			}
+
+			// Small enough; build each tile in turn
+			Band band = new Band();
+			for (int row = this.rowMin; row < this.rowMax; row++) {
+				for (int col = 0; col < cols; col++) {
+					int c = this.codes[row * cols + col];
+					if ((c == 0) || (c == ' ')) { continue; } // Air
+
+					setBlock(row, col, TileMap.fromChar(biome, c), band);
+				}
+			}
+			return band;
+		} /* End method compute */
+	} /* End class BandTask */
+
+
+	/**
+	 * Build the level from the characters of every tile.
+	 *
+	 * Rows are split into bands, which are built at the same time by the
+	 * threads of the common ForkJoinPool:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/java/util/concurrent/ForkJoinPool.html>
+	 *
+	 * Tiles of different rows never share a cell of the map or collision
+	 * grids. Entities and item boxes are kept per band and added to the
+	 * level in order of rows, so the level is the same as if every tile
+	 * were set one at a time.
+	 *
+	 * Collision grids of a level seen before are loaded from the
+	 * GeometryCache, and only entities and item boxes are built. New
+	 * grids are saved to the cache once built.
+	 *
+	 * @param codes characters of every tile, one row after another.
+	 */
+	private void build(byte[] codes) {
+		this.codes = codes;
+
+		this.gridsLoaded = (this.geoKey != null) && GeometryCache.loadGrids(
+			this.geoKey, this.bounds, this.climbable, this.deadly
+		);
+
+		Band band = ForkJoinPool.commonPool().invoke(
+			new BandTask(codes, 0, this.rows)
+		);
+		this.addBand(band);
+
+		if ((this.geoKey != null) && !this.gridsLoaded) {
+			GeometryCache.saveGrids(
+				this.geoKey, this.bounds, this.climbable, this.deadly
+			);
+		}
+		this.gridsLoaded = false; // Later tiles are added as usual
+	} /* End method build */
+
+
+	/**
+	 * Add the entities and item boxes of a band to the level.
+	 */
+	private void addBand(Band band) {
+		this.entities.addAll(band.entities);
+		for (Shape box : band.boxes) { this.boxes.add(box); }
+		if (band.player != null) { this.pCoords = band.player; }
+	} /* End method addBand */
+
+
 	/**
 	 * Load biome from character.
 	 *
@@ -241,10 +671,20 @@ public class Level {
 	 * @param tile TileMap to set the block as
 	 */
 	public void setBlock(int row, int col, TileMap tile) {
-		if (this.map == null) { return; } // level is not loaded, exit
+		Band band = new Band();
+		this.setBlock(row, col, tile, band);
+		this.addBand(band);
+	} /* End method setBlock */
 
-		// Get the attributes for each tile
-		ArrayList<Attribute> tileAttrs = tile.getAttributes();
+
+	/**
+	 * Set a block in the level, keeping entities and item boxes in a band
+	 * to be added to the level later.
+	 *
+	 * Safe to call from several threads at once for different rows.
+	 */
+	private void setBlock(int row, int col, TileMap tile, Band band) {
+		if (this.map == null) { return; } // level is not loaded, exit
 
 		/* Calculate `x` and `y` coordinates of block based on tile position */
 		// Settings.UNIT is the dimension of one tile at default zoom.
@@ -253,70 +693,92 @@ public class Level {
 
 		/* Set entity information if tile represents an entity */
 		if (tile.getEntityType() != EntityType.NONE) {
-			this.setEntity(tile, x, y);
+			this.setEntity(tile, x, y, band);
 			return; // No need to set tile information
 		}
 
 		// Check if tile is empty; if it is, no need to do anything.
-		if (tileAttrs.contains(Attribute.EMPTY)) { return; }
+		if (tile.has(Attribute.EMPTY)) { return; }
 
 		/* It is a tile; add to map of all tiles */
 		try {
-			this.map[row][col] = tile;
+			this.map[row][col] = tile.getCode();
 		} catch (ArrayIndexOutOfBoundsException e) {
 			return; // row and column do not fit; silently fail.
 		}
 
-		Area area; // Store area covered by tile
+		Shape area = null; // Store area covered by tile (null if square)
 
 		/* Calculate the area taken up by a tile */
-		if (tileAttrs.contains(Attribute.NOT_SQUARE)) {
-			// Create exact boundaries for curved tiles
-			area = Utilities.exactBounds(
-				tile.getTile(this.tiles), x, y
-			);
-		} else if (tileAttrs.contains(Attribute.RECTANGULAR)) {
+		// Areas are relative to the tile itself, not the level, as the
+		// collision grids already know where each tile is.
+		if (tile.has(Attribute.NOT_SQUARE)) {
+			// Get exact boundaries for curved tiles (shared by
+			// all tiles of the same type)
+			area = this.tiles.getShape(tile.getX(), tile.getY());
+		} else if (tile.has(Attribute.RECTANGULAR)) {
 			// Create shrunken rectangular boundaries (not square)
-			Rectangle2D tmp = (Rectangle2D.Double)(
-				this.tiles.getBounds(
-					tile.getX(), // X of tile
-					tile.getY()  // Y of tile
-				)
-			).clone(); // Clone so that modifications are private
+			Rectangle2D tmp = this.tiles.getBounds(
+				tile.getX(), // X of tile
+				tile.getY()  // Y of tile
+			);
 
-			// Change position to correspond with coordinates of tile
-			tmp.setRect(x, y, tmp.getWidth(), tmp.getHeight());
+			// Position rectangle at the origin of the tile
+			area = new Rectangle2D.Double(
+				0, 0, tmp.getWidth(), tmp.getHeight()
+			);
+		}
 
-			// Create area with rectangle
-			area = new Area(tmp);
-		} else {
-			// Is a square; use simple square boundary
-			area = new Area(new Rectangle2D.Double(
-				x, y,
+		if (!tile.has(Attribute.PASSABLE)) {
+			// Not passable; add area to overall bounding-box
+			this.addToGrid(this.bounds, row, col, area);
+		}
+		if (tile.has(Attribute.ITEMBOX)) {
+			// Is an itembox; add area to special bounding-boxes.
+			// Itemboxes are removed once hit, so they keep their
+			// own position in the level.
+			Area box = new Area(new Rectangle2D.Double(
+				0, 0,
 				Settings.UNIT * this.zoom,
 				Settings.UNIT * this.zoom
 			));
-		}
+			if (area != null) { box = new Area(area); }
 
-		if (!tileAttrs.contains(Attribute.PASSABLE)) {
-			// Not passable; add area to overall bounding-box
-			this.bounds.add(area);
+			// Move area from tile origin to position in level
+			box.transform(AffineTransform.getTranslateInstance(x, y));
+			band.boxes.add(box);
 		}
-		if (tileAttrs.contains(Attribute.ITEMBOX)) {
-			// Is an itembox; add area to special bounding-boxes
-			this.boxes.add(area);
-		}
-		if (tileAttrs.contains(Attribute.CLIMBABLE)) {
+		if (tile.has(Attribute.CLIMBABLE)) {
 			// Climbable; add to climbable area
-			this.climbable.add(area);
+			this.addToGrid(this.climbable, row, col, area);
 		}
-		if (tileAttrs.contains(Attribute.DEADLY)) {
+		if (tile.has(Attribute.DEADLY)) {
 			// Deadly; add to deadly area
-			this.deadly.add(area);
+			this.addToGrid(this.deadly, row, col, area);
 		}
 	} /* End method setBlock */
 
 
+	/**
+	 * Add a tile to a collision grid.
+	 *
+	 * @param grid CollisionGrid to add tile to.
+	 * @param row row of the tile.
+	 * @param col column of the tile.
+	 * @param area area of the tile relative to its origin, or null if
+	 *             the tile is a full square.
+	 */
+	private void addToGrid(CollisionGrid grid, int row, int col, Shape area) {
+		if (this.gridsLoaded) { return; } // Already in the loaded grid
+
+		if (area == null) {
+			grid.setSolid(row, col); // Square tile
+		} else {
+			grid.setShape(row, col, area); // Irregular tile
+		}
+	} /* End method addToGrid */
+
+
 	/**
 	 * Create entities based on tile start locations.
 	 *
@@ -334,52 +796,63 @@ public class Level {
 	 * @param y real y position of entity based on tile (pixels).
 	 */
 	public void setEntity(TileMap tile, int x, int y) {
+		Band band = new Band();
+		this.setEntity(tile, x, y, band);
+		this.addBand(band);
+	} /* End method setEntity */
+
+
+	/**
+	 * Create an entity, keeping it in a band to be added to the level
+	 * later.
+	 */
+	private void setEntity(TileMap tile, int x, int y, Band band) {
 		EntityType entityType = tile.getEntityType();
 
 		switch (entityType) {
 		case FLAG:   // Entity is a flag
-			this.entities.add(new Flag(
+			band.entities.add(new Flag(
 				x, y, this.entityCostumes[entityType.costume]
 			));
 			break;
 		case PLAYER: // Entity is a player
 			// Players are generated in the Game, so only a
 			// starting position is needed
-			this.pCoords = new Point2D.Double(x, y);
+			band.player = new Point2D.Double(x, y);
 			break;
 		case SLIME:  // Entity is a slime (ground enemy)
-			this.entities.add(new Enemy(
+			band.entities.add(new Enemy(
 				EntityType.SLIME, x, y,
 				this.entityCostumes[entityType.costume], null
 			));
 			break;
 		case FLY:    // Entity is a fly (flying enemy)
-			this.entities.add(new Enemy(
+			band.entities.add(new Enemy(
 				EntityType.FLY, x, y,
 				this.entityCostumes[entityType.costume], null
 			));
 			break;
 		case TORCH:  // Entity is a torch
-			this.entities.add(new Torch(
+			band.entities.add(new Torch(
 				x, y, this.entityCostumes[entityType.costume]
 			));
 			break;
 		case B_COIN: // Entity is an coin Item
-			this.entities.add(new Item(
+			band.entities.add(new Item(
 				x, y,
 				this.entityCostumes[entityType.costume],
 				entityType
 			));
 			break;
 		case S_COIN: // Entity is a coin Item
-			this.entities.add(new Item(
+			band.entities.add(new Item(
 				x, y,
 				this.entityCostumes[entityType.costume],
 				entityType
 			));
 			break;
 		case G_COIN: // Entity is a coin Item
-			this.entities.add(new Item(
+			band.entities.add(new Item(
 				x, y,
 				this.entityCostumes[entityType.costume],
 				entityType
@@ -394,15 +867,16 @@ public class Level {
 	 * 
 	 * @param row the row of the tile.
 	 * @param col the column of the tile.
+	 * @return shared TileMap of the tile, or null if there is no tile.
 	 */
 	public TileMap getBlock(int row, int col) {
 		// Level has not yet been loaded, return no data
-		if (this.map == null) { return new TileMap(); }
+		if (this.map == null) { return TileMap.fromChar(this.biome, ' '); }
 
-		synchronized(this.map) {
-			// Get and return data
-			return this.map[row][col];
-		}
+		byte code = this.map[row][col];
+		if (code == 0) { return null; } // No tile
+
+		return TileMap.fromChar(this.biome, code);
 	} /* End method getBlock */
 
 
@@ -434,7 +908,7 @@ public class Level {
 		TileMap tile = this.getBlock(row, col);
 
 		if (tile == null)   { return null; } // No tile is created
-		if (tile.getAttributes().contains(Attribute.EMPTY)) {
+		if (tile.has(Attribute.EMPTY)) {
 			return null; // Tile is air / empty
 		}
 
@@ -448,54 +922,122 @@ public class Level {
 	/**
 	 * Get the BufferedImage representation of the whole level.
 	 *
-	 * The camera renders the whole level with this one BufferedImage,
-	 * meaning all loading cost is before the level is shown to the player,
-	 * rather than an ongoing cost.
+	 * The Camera only draws the visible part of the level each frame, so
+	 * this is not used while playing; it is useful to see a whole level
+	 * at once.
 	 *
 	 * @param th SpriteHandler to generate the level.
 	 * @param zoom Zoom of the level (for the tile representation)
 	 * @return BufferedImage representation of whole level.
 	 */
 	public BufferedImage getLevel(SpriteHandler th, double zoom) {
-		int u = (int)(Settings.UNIT*zoom); // Dimensions for one tile
-		int xDim = this.cols * u;    // x-width of the whole image
-		int yDim = this.rows * u;    // y-width of the whole image
+		double unit = Settings.UNIT * zoom;  // Dimensions for one tile
+		int xDim = (int)(this.cols * unit);  // x-width of the whole image
+		int yDim = (int)(this.rows * unit);  // y-width of the whole image
 
 		BufferedImage ret = new BufferedImage( // Image to be returned
 			xDim, yDim,                    // Dimensions
 			BufferedImage.TYPE_INT_ARGB    // Type
 		);
 		Graphics2D g2d = ret.createGraphics(); // Draw tiles onto image
+
+		// Draw every tile of the level
+		this.paintTiles(g2d, th, 0, 0, this.rows - 1, this.cols - 1);
+		g2d.dispose();
+
+		return ret; // Return finished representation
+	} /* End method getLevel */
+
+
+	/**
+	 * Draw a rectangular block of tiles of the level.
+	 *
+	 * Tiles are placed at the same positions as their collision boxes, in
+	 * level coordinates; translate the Graphics2D object to draw the block
+	 * somewhere else. Rows and columns outside the level are ignored.
+	 *
+	 * @param g2d Graphics2D object to draw onto.
+	 * @param th SpriteHandler holding the tile images.
+	 * @param rowMin first row to draw.
+	 * @param colMin first column to draw.
+	 * @param rowMax last row to draw (inclusive).
+	 * @param colMax last column to draw (inclusive).
+	 * @return number of tiles drawn.
+	 */
+	public int paintTiles(
+		Graphics2D g2d, SpriteHandler th,
+		int rowMin, int colMin, int rowMax, int colMax
+	) {
+		if (this.map == null) { return 0; } // Level not loaded
+
+		double unit = Settings.UNIT * this.zoom; // One tile
+		int drawn = 0; // Count of tiles drawn
+
 		g2d.setRenderingHints(this.enableAntiAlias);
 		g2d.setRenderingHints(this.enableHighQuality);
 
 		// Iterate for every row (y)
-		for (int row = 0; row < this.getRowNum(); row++) {
+		for (int row = Math.max(0, rowMin); row <= rowMax && row < this.rows; row++) {
+			int y = (int)(row * unit);                // Top of tile
+			int height = (int)((row + 1) * unit) - y; // Up to next tile
+
 			// Iterate for every column (x)
-			for (int col = 0; col < this.getColNum(row); col++) {
+			int cols = Math.min(colMax + 1, this.getColNum(row));
+			for (int col = Math.max(0, colMin); col < cols; col++) {
 				// Get image representation of tile
 				BufferedImage bi = this.getTile(row, col, th);
 
 				// If air, simply ignore!
 				if (bi == null) { continue; }
 
-				// Draw the tile onto level
-				g2d.drawImage(bi, col*u, row*u, null);
+				int x = (int)(col * unit);
+				int width = (int)((col + 1) * unit) - x;
+
+				if ((bi.getWidth() == width) && (bi.getHeight() == height)) {
+					g2d.drawImage(bi, x, y, null); // Exact fit
+				} else {
+					// Tiles at fractional zooms are rounded down;
+					// stretch to the next tile to leave no gaps.
+					g2d.drawImage(bi, x, y, width, height, null);
+				}
+				drawn++;
 			}
 		}
-		return ret; // Return finished representation
-	} /* End method getLevel */
+		return drawn;
+	} /* End method paintTiles */
 
 
 	/**
-	 * Get the impassable boundaries of the level as one Area object.
+	 * Check if a rectangular block of tiles has any tiles to draw.
+	 *
+	 * @param rowMin first row to check.
+	 * @param colMin first column to check.
+	 * @param rowMax last row to check (inclusive).
+	 * @param colMax last column to check (inclusive).
+	 * @return true if every tile in the block is air, else false.
+	 */
+	public boolean isEmpty(int rowMin, int colMin, int rowMax, int colMax) {
+		if (this.map == null) { return true; } // Level not loaded
+
+		for (int row = Math.max(0, rowMin); row <= rowMax && row < this.rows; row++) {
+			int cols = Math.min(colMax + 1, this.getColNum(row));
+			for (int col = Math.max(0, colMin); col < cols; col++) {
+				if (this.map[row][col] != 0) { return false; }
+			}
+		}
+		return true;
+	} /* End method isEmpty */
+
+
+	/**
+	 * Get the impassable boundaries of the level as one CollisionGrid.
 	 * 
 	 * This object contains the area of every impassable object in the level
 	 * for collision checking.
 	 *
-	 * @return area of every impassable object.
+	 * @return grid of every impassable object.
 	 */
-	public Area getBounds() { return bounds; }
+	public CollisionGrid getBounds() { return bounds; }
 
 
 	/**
@@ -509,17 +1051,17 @@ public class Level {
 	/**
 	 * Get the climbable area of the level.
 	 *
-	 * @return area that is climbable for the player.
+	 * @return grid of areas that are climbable for the player.
 	 */
-	public Area getClimbable() { return this.climbable; }
+	public CollisionGrid getClimbable() { return this.climbable; }
 
 
 	/**
 	 * Get a "fatal zone" of the Player.
 	 *
-	 * @return area fatal to the Player within the level.
+	 * @return grid of areas fatal to the Player within the level.
 	 */
-	public Area getDeadly() { return this.deadly; }
+	public CollisionGrid getDeadly() { return this.deadly; }
 
 
 	/**
@@ -550,6 +1092,18 @@ public class Level {
 	public double getHeight() { return this.rows * Settings.UNIT * this.zoom; }
 
 
+	/**
+	 * Get zoom of level (1 being no zoom).
+	 */
+	public double getZoom() { return this.zoom; }
+
+
+	/**
+	 * Get the total columns the level has been shifted left by.
+	 */
+	public long getShifted() { return this.shifted; }
+
+
 	/**
 	 * Get biome of level.
 	 *
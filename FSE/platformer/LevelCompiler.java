@@ -0,0 +1,170 @@
+// ------------------------------------------------------------------------- //
+// The LevelCompiler class converts text level files into the compact binary //
+// level format loaded by Level.loadCompiled.                                //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  platformer                                                      //
+// Filename: LevelCompiler.java                                              //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package platformer;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+public class LevelCompiler {
+
+	/**
+	 * Convert level files given on the command line.
+	 *
+	 * Each `.lvl` file is written next to itself with the extension
+	 * Settings.FILE_EXT_COMPILED instead.
+	 *
+	 * @param args paths of level files to convert.
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.out.println("Usage: LevelCompiler <level.lvl> ...");
+			return;
+		}
+
+		for (String arg : args) {
+			Path in = Paths.get(arg);
+
+			// Swap extension of level for compiled extension
+			String name = in.getFileName().toString();
+			int dot = name.lastIndexOf('.');
+			if (dot >= 0) { name = name.substring(0, dot); }
+			Path out = in.resolveSibling(name + "." + Settings.FILE_EXT_COMPILED);
+
+			if (compile(in, out)) {
+				System.out.println("Compiled " + in + " -> " + out);
+			} else {
+				System.out.println("Failed to compile " + in);
+			}
+		}
+	} /* End method main */
+
+
+	/**
+	 * Compile one text level file into a binary level file.
+	 *
+	 * The binary format is made of, in order (numbers are big-endian):
+	 *
+	 *     int    Settings.LVLB_MAGIC
+	 *     short  Settings.LVLB_VERSION
+	 *     byte   character of the biome (see Biome.rep)
+	 *     int    number of rows
+	 *     int    number of columns
+	 *     int    number of entities
+	 *     entity table: for each entity, in row-major order,
+	 *         byte character of the entity
+	 *         int  row
+	 *         int  column
+	 *     tiles: one byte per tile (row-major), the character of the tile
+	 *            or ' ' for air and entities.
+	 *
+	 * Characters are the same as in text files (see TileMap.fromChar);
+	 * characters past 127 are treated as air, as they are when text files
+	 * are loaded.
+	 *
+	 * @param in path of the text level file.
+	 * @param out path of the binary level file to write.
+	 * @return true if success, false if error encountered.
+	 */
+	public static boolean compile(Path in, Path out) {
+		ArrayList<String> lines = new ArrayList<String>();
+		char biomeCode;
+		int cols = 0;
+
+		/* Read text level */
+		try (BufferedReader stdin = Files.newBufferedReader(
+			in, Charset.forName("UTF-8")
+		)) {
+			String ln = stdin.readLine();
+			// No biome was provided; level is incorrectly formatted
+			if ((ln == null) || ln.isEmpty()) { return false; }
+			biomeCode = ln.charAt(0);
+
+			// Store every line and find the widest one
+			ln = stdin.readLine();
+			while (ln != null) {
+				lines.add(ln);
+				cols = Math.max(cols, ln.length());
+				ln = stdin.readLine();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+		int rows = lines.size();
+
+		// Empty levels are not allowed
+		if ((rows == 0) || (cols == 0)) { return false; }
+
+		/* Split tiles from entities */
+		byte[] tiles = new byte[rows * cols];
+		ByteArrayOutputStream entityBytes = new ByteArrayOutputStream();
+		DataOutputStream entityTable = new DataOutputStream(entityBytes);
+		int entityCnt = 0;
+
+		try {
+			for (int row = 0; row < rows; row++) {
+				String ln = lines.get(row);
+				for (int col = 0; col < cols; col++) {
+					int c = (col < ln.length()) ? ln.charAt(col) : ' ';
+					if (c > 127) { c = ' '; } // Not a level character
+
+					tiles[row * cols + col] = (byte)' ';
+					if (isEntity(c)) {
+						// Entities are listed in the table
+						entityTable.writeByte(c);
+						entityTable.writeInt(row);
+						entityTable.writeInt(col);
+						entityCnt++;
+					} else {
+						tiles[row * cols + col] = (byte)c;
+					}
+				}
+			}
+		} catch (IOException e) {
+			return false; // Cannot happen when writing to memory
+		}
+
+		/* Write binary level */
+		try (DataOutputStream stdout = new DataOutputStream(
+			new BufferedOutputStream(Files.newOutputStream(out))
+		)) {
+			stdout.writeInt(Settings.LVLB_MAGIC);
+			stdout.writeShort(Settings.LVLB_VERSION);
+			stdout.writeByte(biomeCode);
+			stdout.writeInt(rows);
+			stdout.writeInt(cols);
+			stdout.writeInt(entityCnt);
+			entityBytes.writeTo(stdout);
+			stdout.write(tiles);
+		} catch (IOException e) {
+			return false;
+		}
+		return true; // Success
+	} /* End method compile */
+
+
+	/**
+	 * Check if a level character marks the start of an entity.
+	 *
+	 * @param c character of the level file.
+	 */
+	private static boolean isEntity(int c) {
+		// Entities are the same in every biome
+		return TileMap.fromChar(Biome.GRASSY, c).getEntityType() != EntityType.NONE;
+	} /* End method isEntity */
+
+} /* End class LevelCompiler */
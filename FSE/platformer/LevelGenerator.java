@@ -0,0 +1,424 @@
+// ------------------------------------------------------------------------- //
+// The LevelGenerator class creates levels of any length from a seed, and    //
+// writes them as level files one row at a time.                             //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  platformer                                                      //
+// Filename: LevelGenerator.java                                             //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package platformer;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+public class LevelGenerator {
+
+	/* Features a chunk may have */
+	private static final int PLAIN     = 0; // Flat ground with coins
+	private static final int LAVA      = 1; // Lava pit to jump over
+	private static final int WATER     = 2; // Pool to swim through
+	private static final int ITEMBOXES = 3; // Item boxes to hit from below
+	private static final int PLATFORM  = 4; // Floating platform
+	private static final int LADDER    = 5; // Raised ground climbed by ladder
+	private static final int BRIDGE    = 6; // Bridge over lava
+	private static final int FEATURES  = 7; // Number of features
+
+	private long seed;   // Seed of the level
+	private Biome biome; // Biome of the level
+	private int rows;    // Rows of the level
+	private int cols;    // Columns of the level
+	private int chunks;  // Chunks of Settings.GEN_CHUNK columns
+
+	/**
+	 * Create a generator of one level.
+	 *
+	 * A level is split into chunks of Settings.GEN_CHUNK columns. Each
+	 * chunk is worked out only from the seed and its own number, so any
+	 * chunk can be made at any time, in any order, and always comes out
+	 * the same. The ground height where two chunks meet is also picked
+	 * from the seed and the number of the edge, so neighbouring chunks
+	 * line up without knowing about each other.
+	 *
+	 * Chunks are filled with the characters of level files (see
+	 * TileMap.fromChar), so generated levels load like any other.
+	 *
+	 * @param seed seed of the level; the same seed makes the same level.
+	 * @param biome biome of the level.
+	 * @param rows rows of the level; at least Settings.GEN_MIN_ROWS.
+	 * @param cols columns of the level; at least two chunks.
+	 */
+	public LevelGenerator(long seed, Biome biome, int rows, int cols) {
+		if (rows < Settings.GEN_MIN_ROWS) {
+			throw new IllegalArgumentException("Too few rows: " + rows);
+		}
+		if (cols < Settings.GEN_CHUNK * 2) {
+			throw new IllegalArgumentException("Too few columns: " + cols);
+		}
+		this.seed = seed;
+		this.biome = biome;
+		this.rows = rows;
+		this.cols = cols;
+		this.chunks = (cols + Settings.GEN_CHUNK - 1) / Settings.GEN_CHUNK;
+	} /* End constructor */
+
+
+	/**
+	 * Create a generator of an endless level.
+	 *
+	 * The level is as many columns long as an int can count, so its flag
+	 * is never reached. Chunks are meant to be made one at a time as they
+	 * are needed (see WorldStream), never written out as a whole level.
+	 *
+	 * @param seed seed of the level; the same seed makes the same level.
+	 * @param biome biome of the level.
+	 * @param rows rows of the level; at least Settings.GEN_MIN_ROWS.
+	 */
+	public LevelGenerator(long seed, Biome biome, int rows) {
+		this(seed, biome, rows, Integer.MAX_VALUE - Settings.GEN_CHUNK);
+	} /* End constructor */
+
+
+	/**
+	 * Generate a level file from the command line.
+	 *
+	 * Files ending in Settings.FILE_EXT_COMPILED are compiled with the
+	 * LevelCompiler after being written.
+	 *
+	 * @param args path of the level, then optionally the number of
+	 *             columns, seed and biome character (see Biome.rep).
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.out.println(
+				"Usage: LevelGenerator <level.lvl|level.lvlb> [columns] [seed] [biome]"
+			);
+			return;
+		}
+		Path out = Paths.get(args[0]);
+		int cols = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+		long seed = (args.length > 2) ? Long.parseLong(args[2]) : 0;
+
+		// Pick biome from the seed unless given
+		Biome biome = biomeOf(seed);
+		if (args.length > 3) {
+			for (Biome b : Biome.values()) {
+				if (b.rep == args[3].charAt(0)) { biome = b; }
+			}
+		}
+
+		LevelGenerator gen = new LevelGenerator(
+			seed, biome, Settings.GEN_ROWS, cols
+		);
+		long start = System.nanoTime();
+		if (gen.write(out)) {
+			System.out.printf(
+				"Generated %s (%d columns, %s) in %.0f ms%n",
+				out, cols, biome, (System.nanoTime() - start) / 1000000d
+			);
+		} else {
+			System.out.println("Failed to generate " + out);
+		}
+	} /* End method main */
+
+
+	/**
+	 * Pick the biome of a level from its seed, so every seed always has
+	 * the same biome.
+	 *
+	 * @param seed seed of the level.
+	 * @return one of the biomes, spread evenly between seeds.
+	 */
+	public static Biome biomeOf(long seed) {
+		Biome[] biomes = Biome.values();
+		return biomes[(int)Math.floorMod(seed, (long)biomes.length)];
+	} /* End method biomeOf */
+
+
+	/**
+	 * Write the level to a file.
+	 *
+	 * Level files list tiles one row at a time, but the level is made
+	 * one chunk of columns at a time. Rather than keeping the whole level
+	 * in memory, the chunks are made again for every row, so only one
+	 * chunk is kept however long the level is. Chunks are small, so this
+	 * stays fast even for a level of 100000 columns.
+	 *
+	 * @param path path of the level file; a compiled level is written if
+	 *             it ends in Settings.FILE_EXT_COMPILED.
+	 * @return true if success, false if error encountered.
+	 */
+	public boolean write(Path path) {
+		String name = path.getFileName().toString().toLowerCase();
+		if (!name.endsWith("." + Settings.FILE_EXT_COMPILED)) {
+			return this.writeText(path);
+		}
+
+		// Write a text level next to the compiled one, then compile it
+		Path text = path.resolveSibling(
+			path.getFileName() + ".tmp." + Settings.FILE_EXT
+		);
+		try {
+			return this.writeText(text) && LevelCompiler.compile(text, path);
+		} finally {
+			try {
+				Files.deleteIfExists(text);
+			} catch (IOException e) {
+				// Leftover text file does no harm
+			}
+		}
+	} /* End method write */
+
+
+	/**
+	 * Write the level as a text level file.
+	 */
+	private boolean writeText(Path path) {
+		byte[][] grid = new byte[this.rows][Settings.GEN_CHUNK];
+
+		try (OutputStream stdout = new BufferedOutputStream(
+			Files.newOutputStream(path)
+		)) {
+			stdout.write(this.biome.rep);
+			stdout.write('\n');
+
+			for (int row = 0; row < this.rows; row++) {
+				for (int chunk = 0; chunk < this.chunks; chunk++) {
+					this.fillChunk(chunk, grid);
+					stdout.write(grid[row], 0, this.getChunkWidth(chunk));
+				}
+				stdout.write('\n');
+			}
+		} catch (IOException e) {
+			return false;
+		}
+		return true;
+	} /* End method writeText */
+
+
+	/**
+	 * Get the number of chunks in the level.
+	 */
+	public int getChunks() { return this.chunks; }
+
+	/**
+	 * Get the number of rows of the level.
+	 */
+	public int getRows() { return this.rows; }
+
+	/**
+	 * Get the number of columns of a chunk; the last may be shorter.
+	 */
+	public int getChunkWidth(int chunk) {
+		return Math.min(Settings.GEN_CHUNK, this.cols - chunk * Settings.GEN_CHUNK);
+	} /* End method getChunkWidth */
+
+
+	/**
+	 * Fill the tiles and entities of one chunk.
+	 *
+	 * The first chunk holds the player's start, and the chunk with the
+	 * flag (and any after it) is plain. Every other chunk has one
+	 * feature, and may have slimes, flies, coins and (underground)
+	 * torches.
+	 *
+	 * @param chunk number of the chunk.
+	 * @param grid characters to fill, as [row][column in chunk], at
+	 *             least Settings.GEN_CHUNK columns wide.
+	 */
+	public void fillChunk(int chunk, byte[][] grid) {
+		final int w = Settings.GEN_CHUNK;
+		Random rand = new Random(mix(this.seed, chunk));
+
+		// Column of the flag, four from the end of the level
+		int flagChunk = (this.cols - 4) / w;
+		int flagCol = (this.cols - 4) % w;
+
+		/* Ground */
+		// Ground height (solid rows) of each column; the left half of the
+		// chunk meets the previous chunk and the right half the next
+		int[] ground = new int[w];
+		int left = this.edgeHeight(chunk);
+		int right = this.edgeHeight(chunk + 1);
+		for (int col = 0; col < w; col++) {
+			ground[col] = (col < w / 2) ? left : right;
+		}
+
+		int feature = PLAIN;
+		if ((chunk != 0) && (chunk < flagChunk)) {
+			feature = rand.nextInt(FEATURES);
+		}
+		int at = w / 4 + rand.nextInt(w / 4); // First column of feature
+
+		// Raised ground is climbed by a ladder next to it
+		if (feature == LADDER) {
+			for (int col = at; col < at + 6; col++) { ground[col] += 5; }
+		}
+
+		for (int row = 0; row < this.rows; row++) {
+			Arrays.fill(grid[row], (byte)' ');
+		}
+		for (int col = 0; col < w; col++) {
+			int top = this.rows - ground[col]; // Row of ground surface
+			grid[top][col] = '-';
+			for (int row = top + 1; row < this.rows; row++) {
+				grid[row][col] = '=';
+			}
+		}
+
+		// Underground levels have a ceiling
+		if (this.biome == Biome.ROCKY) {
+			Arrays.fill(grid[0], (byte)'=');
+		}
+
+		/* Feature */
+		int top = this.rows - ground[at]; // Row of ground at feature
+		switch (feature) {
+		case LAVA:
+			int lavaW = 2 + rand.nextInt(2);
+			for (int col = at; col < at + lavaW; col++) {
+				this.fillPit(grid, col, this.rows - ground[col], 'l', 'L');
+			}
+			break;
+		case WATER:
+			int waterW = 3 + rand.nextInt(3);
+			for (int col = at; col < at + waterW; col++) {
+				this.fillPit(grid, col, this.rows - ground[col], 'w', 'W');
+			}
+			break;
+		case ITEMBOXES:
+			grid[this.above(top, 4)][at] = '#';
+			grid[this.above(top, 4)][at + 1] = '!';
+			grid[this.above(top, 4)][at + 2] = '#';
+			if (rand.nextBoolean()) { grid[this.above(top, 4)][at + 4] = '!'; }
+			break;
+		case PLATFORM:
+			grid[this.above(top, 4)][at] = ':';
+			grid[this.above(top, 4)][at + 1] = '^';
+			grid[this.above(top, 4)][at + 2] = '^';
+			grid[this.above(top, 4)][at + 3] = ';';
+			grid[this.above(top, 5)][at + 1] = '$'; // Reward on top
+			grid[this.above(top, 5)][at + 2] = '$';
+			break;
+		case LADDER:
+			// Ladder from the ground next to the raised ground, up to
+			// its surface
+			int base = this.rows - ground[at - 1];
+			grid[top][at - 1] = '{';
+			for (int row = top + 1; row < base; row++) {
+				grid[row][at - 1] = '[';
+			}
+			grid[top - 1][at + 3] = 'C';
+			break;
+		case BRIDGE:
+			for (int col = at; col < at + 4; col++) {
+				int surface = this.rows - ground[col];
+				grid[surface][col] = 'b';
+				this.fillPit(grid, col, surface + 1, 'l', 'L');
+			}
+			break;
+		default: // PLAIN
+			if (rand.nextBoolean()) {
+				grid[top - 1][at] = 'F'; // Fence to walk past
+				grid[top - 1][at + 1] = 'f';
+			}
+		}
+
+		/* Entities */
+		if (chunk == 0) {
+			grid[this.rows - ground[2] - 2][2] = 'P';
+			grid[this.rows - ground[4] - 1][4] = '`'; // Sign to the right
+		}
+		if (chunk != 0) {
+			// Slimes and coins away from the feature
+			int col = 2 + rand.nextInt(w / 4 - 4);
+			if (rand.nextBoolean()) {
+				grid[this.rows - ground[col] - 1][col] = 'S';
+			}
+			byte[] coins = {'c', 'c', 'c', 'C', 'C', '$'};
+			int coinCol = w - 6 + rand.nextInt(3);
+			for (int i = 0; i < 3; i++) {
+				grid[this.rows - ground[coinCol + i] - 2][coinCol + i] =
+					coins[rand.nextInt(coins.length)];
+			}
+			if (rand.nextInt(3) == 0) {
+				grid[this.above(this.rows - ground[at], 7)][at + 1] = '%'; // Fly
+			}
+		}
+		if (this.biome == Biome.ROCKY) {
+			grid[this.rows - ground[1] - 2][1] = 'T'; // Torch
+		}
+		if (chunk == flagChunk) {
+			grid[this.rows - ground[flagCol] - 1][flagCol] = '@';
+		}
+	} /* End method fillChunk */
+
+
+	/**
+	 * Fill a column of a pit with a liquid, two tiles deep.
+	 *
+	 * @param top row of the surface of the liquid.
+	 * @param surface character of the surface of the liquid.
+	 * @param depth character of the liquid below its surface.
+	 */
+	private void fillPit(byte[][] grid, int col, int top, char surface, char depth) {
+		grid[top][col] = (byte)surface;
+		for (int row = top + 1; (row < top + 3) && (row < this.rows); row++) {
+			grid[row][col] = (byte)depth;
+		}
+	} /* End method fillPit */
+
+
+	/**
+	 * Get the row some tiles above a surface, but never in or above the
+	 * top row (the ceiling of underground levels).
+	 *
+	 * Raised ground (LADDER) can put features high enough above the
+	 * surface to leave the level when it has few rows.
+	 *
+	 * @param top row of the surface.
+	 * @param height tiles above the surface.
+	 */
+	private int above(int top, int height) {
+		return Math.max(1, top - height);
+	} /* End method above */
+
+
+	/**
+	 * Get the ground height where a chunk begins.
+	 *
+	 * Heights are within one tile of a third of the rows, so every two
+	 * neighbouring heights can be jumped between.
+	 *
+	 * @param edge number of the chunk that begins at the edge.
+	 */
+	private int edgeHeight(int edge) {
+		int step = (int)Math.floorMod(mix(this.seed, -1 - (long)edge), 3L) - 1;
+		return this.rows / 3 + step;
+	} /* End method edgeHeight */
+
+
+	/**
+	 * Mix a seed and a number into a new well spread seed.
+	 *
+	 * Uses the finishing step of SplitMix64, so chunks next to each other
+	 * get very different seeds:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/java/util/SplittableRandom.html>
+	 */
+	private static long mix(long seed, long n) {
+		long z = seed + n * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	} /* End method mix */
+
+} /* End class LevelGenerator */
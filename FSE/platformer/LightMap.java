@@ -0,0 +1,387 @@
+// ------------------------------------------------------------------------- //
+// The LightMap class creates the darkening overlay of dark levels, reusing  //
+// its images between frames.                                                //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  platformer                                                      //
+// Filename: LightMap.java                                                   //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package platformer;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class LightMap {
+
+	// Lights are removed from the overlay with DST_OUT: the more opaque
+	// a pixel of a light, the more transparent the overlay becomes.
+	private static final AlphaComposite LIGHT = AlphaComposite.getInstance(
+		AlphaComposite.DST_OUT
+	);
+
+	// Smooth the edges of lights
+	private RenderingHints enableAntiAlias = new RenderingHints(
+		RenderingHints.KEY_ANTIALIASING,
+		RenderingHints.VALUE_ANTIALIAS_ON
+	);
+
+	private double radius;  // Radius of one light in pixels (with zoom)
+
+	private BufferedImage light = null;    // Light of one dynamic source
+	private int[] glow = null;             // Alpha of one static source (0-255)
+	private int glowSize = 0;              // Width and height of `glow`
+	private ArrayList<Entity> sources;     // Light sources that never move
+	private BufferedImage overlay = null;  // Darkness over the screen
+	private Graphics2D overlayG2d = null;  // Draws onto the overlay
+	private int[] pixels = null;           // Pixels of the overlay
+
+	// Size of the static layer, if it covered the whole level
+	private int layerW = 0;
+	private int layerH = 0;
+
+	// Light of all static sources around the viewport, one alpha value
+	// (0-255) per pixel of the static layer from (stillX, stillY)
+	private byte[] still = null;
+	private int stillX = 0;
+	private int stillY = 0;
+	private int stillW = 0;
+	private int stillH = 0;
+
+	// Reused between frames when stretching the static light
+	private int[] rowLight = null; // One row of static light
+	private int[] colIndex = null; // Pixel of static light for each column
+	private int[] colWeight = null; // Weight of the next pixel (0-255)
+
+	private boolean lit = false; // Whether lights are shown this frame
+	private int viewX = 0;       // Position of the viewport in the level
+	private int viewY = 0;
+
+	/**
+	 * Create a LightMap for a level.
+	 *
+	 * A LightMap keeps one overlay the size of the screen and reuses it
+	 * while the window keeps its size, so no images are made per frame.
+	 *
+	 * Sources that never move (torches) are painted at a lower resolution
+	 * into a static layer; each frame the visible part of it is stretched
+	 * over the overlay. The layer only covers the viewport and a margin of
+	 * Settings.LIGHT_MARGIN around it, and is painted again once the
+	 * viewport leaves it, so its memory depends on the size of the window
+	 * instead of the size of the level. Sources that move (the player)
+	 * are stamped from one light image painted when the LightMap is
+	 * created.
+	 *
+	 * @param lvl level to light up.
+	 * @param sources light sources that never move.
+	 * @param radius radius of each light in pixels.
+	 */
+	public LightMap(Level lvl, ArrayList<Entity> sources, double radius) {
+		this.radius = radius;
+		this.light = this.paintLight(radius);
+
+		/* Prepare static light layer */
+		int scale = Settings.LIGHT_SCALE;
+		this.layerW = (int)Math.ceil(lvl.getWidth() / scale) + 1;
+		this.layerH = (int)Math.ceil(lvl.getHeight() / scale) + 1;
+
+		// Only the alpha of the scaled light is needed
+		BufferedImage small = this.paintLight(radius / scale);
+		this.glowSize = small.getWidth();
+		this.glow = small.getRGB(
+			0, 0, this.glowSize, this.glowSize, null, 0, this.glowSize
+		);
+		for (int i = 0; i < this.glow.length; i++) { this.glow[i] >>>= 24; }
+
+		this.relight(sources);
+	} /* End constructor */
+
+
+	/**
+	 * Change the static light sources, such as after the torches of an
+	 * endless level have been moved (see Level.shift).
+	 *
+	 * The static layer is painted again in the next frame.
+	 *
+	 * @param sources light sources that never move.
+	 */
+	public void relight(ArrayList<Entity> sources) {
+		this.sources = sources;
+		this.stillW = 0; // Covers nothing, so is painted when next needed
+		this.stillH = 0;
+	} /* End method relight */
+
+
+	/**
+	 * Paint the part of the static layer around the viewport.
+	 *
+	 * Lights are blended straight into the alpha values by hand, the same
+	 * as drawing them over each other with AlphaComposite.SRC_OVER, so no
+	 * image is needed for the layer.
+	 *
+	 * @param xMin first column of the layer that must be painted.
+	 * @param yMin first row of the layer that must be painted.
+	 * @param xMax last column of the layer that must be painted.
+	 * @param yMax last row of the layer that must be painted.
+	 */
+	private void paintStill(int xMin, int yMin, int xMax, int yMax) {
+		int scale = Settings.LIGHT_SCALE;
+		int margin = Settings.LIGHT_MARGIN;
+
+		// Paint a margin around the viewport, so it can move a while
+		// before the layer must be painted again
+		this.stillX = Math.max(0, xMin - margin);
+		this.stillY = Math.max(0, yMin - margin);
+		this.stillW = Math.min(this.layerW, xMax + 1 + margin) - this.stillX;
+		this.stillH = Math.min(this.layerH, yMax + 1 + margin) - this.stillY;
+
+		// Arrays are only made again when the window grows
+		int size = this.stillW * this.stillH;
+		if ((this.still == null) || (this.still.length < size)) {
+			this.still = new byte[size];
+		} else {
+			Arrays.fill(this.still, 0, size, (byte)0); // No light
+		}
+		if ((this.rowLight == null) || (this.rowLight.length < this.stillW)) {
+			this.rowLight = new int[this.stillW];
+		}
+
+		for (Entity source : this.sources) {
+			// Top left of the light within the painted part
+			int left = (int)Math.round(
+				source.getCentreX() / scale - this.glowSize / 2d
+			) - this.stillX;
+			int top = (int)Math.round(
+				source.getCentreY() / scale - this.glowSize / 2d
+			) - this.stillY;
+
+			// Part of the light inside the painted part
+			int x0 = Math.max(0, left);
+			int y0 = Math.max(0, top);
+			int x1 = Math.min(this.stillW, left + this.glowSize);
+			int y1 = Math.min(this.stillH, top + this.glowSize);
+
+			// Overlapping lights combine; SRC_OVER keeps the same amount
+			// of light as removing each light from the overlay in turn.
+			for (int y = y0; y < y1; y++) {
+				int row = y * this.stillW;
+				int glowRow = (y - top) * this.glowSize - left;
+				for (int x = x0; x < x1; x++) {
+					int src = this.glow[glowRow + x];
+					int dst = this.still[row + x] & 255;
+					this.still[row + x] = (byte)(
+						src + dst - (src * dst + 127) / 255
+					);
+				}
+			}
+		}
+	} /* End method paintStill */
+
+
+	/**
+	 * Paint the light of one source.
+	 *
+	 * Light is stored in the alpha of the image: the centre is opaque and
+	 * fades to the edge so that the overlay returns to the alpha of
+	 * Settings.COLOUR_GRADIENT, like the original gradient paint.
+	 * Gradients are applied with the RadialGradientPaint object:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/java/awt/RadialGradientPaint.html>
+	 *
+	 * and later removed from the overlay with a custom AlphaComposite rule:
+	 *
+	 * <https://docs.oracle.com/javase/7/docs/api/java/awt/AlphaComposite.html>
+	 *
+	 * @param radius radius of the light.
+	 * @return image of the light.
+	 */
+	private BufferedImage paintLight(double radius) {
+		int size = Math.max(1, (int)Math.ceil(radius * 2)); // Diameter
+		BufferedImage bi = new BufferedImage(
+			size, size, BufferedImage.TYPE_INT_ARGB
+		);
+		Graphics2D g2d = bi.createGraphics();
+		g2d.setRenderingHints(this.enableAntiAlias);
+
+		g2d.setPaint(new RadialGradientPaint(
+			new Point2D.Double(size / 2d, size / 2d), // Centre
+			(float)Math.max(radius, 0.5),           // Radius
+			new float[] {0f, 1f},                   // Only two colours
+			new Color[] {
+				new Color(0, 0, 0, 255), // Full light
+				new Color(0, 0, 0, 255 - Settings.COLOUR_GRADIENT.getAlpha())
+			}
+		));
+		g2d.fill(new Ellipse2D.Double(0, 0, size, size));
+		g2d.dispose();
+
+		return bi;
+	} /* End method paintLight */
+
+
+	/**
+	 * Start a new frame of the overlay.
+	 *
+	 * Fills the overlay with darkness and, if the level is dark enough,
+	 * removes the light of the static sources within the viewport.
+	 *
+	 * @param viewX x position of the viewport within the level.
+	 * @param viewY y position of the viewport within the level.
+	 * @param darkenLvl amount to darken the level by.
+	 */
+	public void begin(int viewX, int viewY, double darkenLvl) {
+		int width = Settings.resX();
+		int height = Settings.resY();
+		this.viewX = viewX;
+		this.viewY = viewY;
+
+		/* Resize overlay only when the window changes size */
+		if (
+			(this.overlay == null)
+			|| (this.overlay.getWidth() != width)
+			|| (this.overlay.getHeight() != height)
+		) {
+			if (this.overlayG2d != null) { this.overlayG2d.dispose(); }
+
+			this.overlay = new BufferedImage(
+				width, height, BufferedImage.TYPE_INT_ARGB
+			);
+			this.overlayG2d = this.overlay.createGraphics();
+			this.overlayG2d.setComposite(LIGHT);
+			this.pixels = (
+				(DataBufferInt)this.overlay.getRaster().getDataBuffer()
+			).getData();
+
+			this.colIndex = new int[width];
+			this.colWeight = new int[width];
+		}
+
+		int shade = (int)darkenLvl; // Alpha of darkness
+
+		// Not dark enough for torch circles
+		this.lit = (darkenLvl >= Settings.COLOUR_GRADIENT.getAlpha());
+		if (!this.lit) {
+			Arrays.fill(this.pixels, shade << 24); // Black at `shade` alpha
+			return;
+		}
+
+		/* Static lights */
+		// The static layer is stretched over the screen with bilinear
+		// interpolation. Graphics2D does this very slowly without a
+		// graphics card, so it is done here by hand in whole numbers,
+		// where 256 stands for one pixel of the static layer.
+		for (int x = 0; x < width; x++) {
+			int pos = this.toLayer(viewX + x);
+			this.colIndex[x] = pos >> 8;
+			this.colWeight[x] = pos & 255;
+		}
+
+		// Part of the layer under the viewport
+		int xMin = this.clamp(this.colIndex[0], this.layerW);
+		int xMax = this.clamp(this.colIndex[width - 1] + 1, this.layerW);
+		int yMin = this.clamp(this.toLayer(viewY) >> 8, this.layerH);
+		int yMax = this.clamp(
+			(this.toLayer(viewY + height - 1) >> 8) + 1, this.layerH
+		);
+
+		// Paint the layer again once the viewport leaves the painted part
+		if (
+			(xMin < this.stillX) || (xMax >= this.stillX + this.stillW)
+			|| (yMin < this.stillY) || (yMax >= this.stillY + this.stillH)
+		) {
+			this.paintStill(xMin, yMin, xMax, yMax);
+		}
+
+		for (int y = 0; y < height; y++) {
+			int pos = this.toLayer(viewY + y);
+			int top = (this.clamp(pos >> 8, this.layerH) - this.stillY)
+				* this.stillW - this.stillX;
+			int bottom = (this.clamp((pos >> 8) + 1, this.layerH) - this.stillY)
+				* this.stillW - this.stillX;
+			int weight = pos & 255;
+
+			// Blend the two nearest rows of the layer
+			for (int x = xMin; x <= xMax; x++) {
+				this.rowLight[x - this.stillX] =
+					(this.still[top + x] & 255) * (256 - weight)
+					+ (this.still[bottom + x] & 255) * weight;
+			}
+
+			// Blend the two nearest columns of the row
+			int row = y * width;
+			for (int x = 0; x < width; x++) {
+				int left = this.clamp(this.colIndex[x], this.layerW) - this.stillX;
+				int right = this.clamp(this.colIndex[x] + 1, this.layerW)
+					- this.stillX;
+				int glow = (
+					this.rowLight[left] * (256 - this.colWeight[x])
+					+ this.rowLight[right] * this.colWeight[x]
+				) >> 16;
+
+				this.pixels[row + x] = (shade * (255 - glow) / 255) << 24;
+			}
+		}
+	} /* End method begin */
+
+
+	/**
+	 * Find the position of a level pixel in the static layer, so that
+	 * the centres of pixels line up.
+	 *
+	 * @param pos position in the level.
+	 * @return position in the static layer, times 256.
+	 */
+	private int toLayer(int pos) {
+		return Math.floorDiv((2 * pos + 1) * 128, Settings.LIGHT_SCALE) - 128;
+	} /* End method toLayer */
+
+
+	/**
+	 * Limit a pixel of the static layer to between 0 and `size` - 1.
+	 */
+	private int clamp(int pos, int size) {
+		return Math.max(0, Math.min(size - 1, pos));
+	} /* End method clamp */
+
+
+	/**
+	 * Remove the light of a moving source from the overlay.
+	 *
+	 * Does nothing if the level is not dark enough for lights.
+	 *
+	 * @param x x position of the centre of the source in the level.
+	 * @param y y position of the centre of the source in the level.
+	 */
+	public void addLight(double x, double y) {
+		if (!this.lit) { return; }
+
+		this.overlayG2d.drawImage(
+			this.light,
+			(int)Math.round(x - this.viewX - this.light.getWidth() / 2d),
+			(int)Math.round(y - this.viewY - this.light.getHeight() / 2d),
+			null
+		);
+	} /* End method addLight */
+
+
+	/**
+	 * Get the finished overlay of this frame, to draw over the screen.
+	 */
+	public BufferedImage getOverlay() { return this.overlay; }
+
+
+	/**
+	 * Get the radius of the lights.
+	 */
+	public double getRadius() { return this.radius; }
+
+} /* End class LightMap */
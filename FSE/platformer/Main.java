@@ -44,6 +44,13 @@ public class Main {
 	 * Start the program by creating an initial GUI.
 	 */
 	public static void main(String[] args) {
+		// Save any profiler measurements when the game is closed
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				Profiler.dump(Profiler.getDumpPath());
+			}
+		});
+
 		// Create the GUI in the same thread as the AWT thread.
 
 		// This is a best practice adopted from the Java docs:
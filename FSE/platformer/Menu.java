@@ -14,7 +14,9 @@
 package platformer;
 
 import javax.swing.*;
+import javax.swing.event.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
 
 public class Menu extends JPanel {
 
@@ -83,6 +85,10 @@ public class Menu extends JPanel {
 		this.lvlSelect.setFont(dialogFont);
 		this.lvlSelect.setMaximumSize(lvlSelect.getPreferredSize());
 
+		// buttonCall listens for this ActionCommand to load the level
+		this.lvlSelect.setActionCommand("select");
+		this.lvlSelect.addActionListener(buttonCall);
+
 		// Create zoom slider descriptor
 		JLabel sliDescrip = new JLabel("Select a zoom:");
 		sliDescrip.setFont(dialogFont);
@@ -97,6 +103,19 @@ public class Menu extends JPanel {
 		this.zoomBar.setPaintTrack(true);      // Draw track for paint
 		this.zoomBar.setFont(dialogFont); // Set the correct font
 
+		// Sliders do not send ActionEvents, so send one to buttonCall
+		// once the slider is let go.
+		final Game listener = buttonCall;
+		this.zoomBar.addChangeListener(new ChangeListener() {
+			public void stateChanged(ChangeEvent e) {
+				if (zoomBar.getValueIsAdjusting()) { return; }
+
+				listener.actionPerformed(new ActionEvent(
+					zoomBar, ActionEvent.ACTION_PERFORMED, "select"
+				));
+			}
+		});
+
 		// Create start button
 		this.start = new JButton("Start!");
 		this.start.setFont(startFont);
@@ -211,6 +230,14 @@ public class Menu extends JPanel {
 	} /* End method getCurrentZoom */
 
 
+	/**
+	 * Enable or disable the start button.
+	 */
+	public void setStartEnabled(boolean enabled) {
+		this.start.setEnabled(enabled);
+	} /* End method setStartEnabled */
+
+
 	/**
 	 * Set description of the menu.
 	 */
@@ -70,15 +70,20 @@ public class Player extends Entity implements KeyListener {
 	 * including coordinate position, etc.
 	 *
 	 * @param diffT difference in time
-	 * @param bounds Shape representing collision boxes entity should be
+	 * @param bounds grid representing collision boxes entity should be
 	 *               aware of.
-	 * @param climbable Shape representing climbable areas the entity
+	 * @param climbable grid representing climbable areas the entity
 	 *                  should be aware of.
-	 * @param deadly Shape representing areas fatal to the player.
+	 * @param deadly grid representing areas fatal to the player.
 	 */
-	public void update(double diffT, Shape bounds, Shape climbable, Shape deadly) {
+	public void update(
+		double diffT, CollisionGrid bounds, CollisionGrid climbable,
+		CollisionGrid deadly
+	) {
 		super.update(diffT, bounds); // Update ticks through Entity
 
+		double zoom = Settings.zoom(); // Read once per update
+
 		/* Adjust velX for friction, slip */
 		super.setVelX(super.adjustVel(diffT, super.xAccel, super.xVel));
 
@@ -88,8 +93,8 @@ public class Player extends Entity implements KeyListener {
 
 			// Do not take into account obstacles if dead
 			super.move(
-				(int)(diffT * this.xVel * Settings.zoom()),
-				(int)(diffT * this.yVel * Settings.zoom())
+				(int)(diffT * this.xVel * zoom),
+				(int)(diffT * this.yVel * zoom)
 			);
 			return; // Don't do rest of method
 		}
@@ -120,8 +125,8 @@ public class Player extends Entity implements KeyListener {
 
 		/* Bounded move takes obstacles into account */
 		super.boundedMove(
-			(int)(diffT * this.xVel * Settings.zoom()), // Take into account zoom
-			(int)(diffT * this.yVel * Settings.zoom()),
+			(int)(diffT * this.xVel * zoom), // Take into account zoom
+			(int)(diffT * this.yVel * zoom),
 			bounds
 		);
 	} /* End method update */
@@ -179,10 +184,20 @@ public class Player extends Entity implements KeyListener {
 	 * @param e key pressed.
 	 */
 	@Override
-	public void keyPressed(KeyEvent e) {
+	public void keyPressed(KeyEvent e) { this.press(e.getKeyCode()); }
+
+
+	/**
+	 * Press a key by its key code, without needing a KeyEvent.
+	 *
+	 * Used by `keyPressed`, and by a headless Simulation to play scripted
+	 * input with no window to send key events from.
+	 *
+	 * @param code key code pressed, such as Settings.KEY_UP.
+	 */
+	public void press(int code) {
 		// If not alive, do not accept controls
 		if (!this.alive) { return; }
-		int code = e.getKeyCode();
 
 		switch (code) {
 		case Settings.KEY_UP:
@@ -214,7 +229,7 @@ public class Player extends Entity implements KeyListener {
 			rightKeyPressed = true;
 			break;
 		}
-	} /* End method keyPressed */
+	} /* End method press */
 
 
 	/**
@@ -225,10 +240,17 @@ public class Player extends Entity implements KeyListener {
 	 * @param e key pressed.
 	 */
 	@Override
-	public void keyReleased(KeyEvent e) {
+	public void keyReleased(KeyEvent e) { this.release(e.getKeyCode()); }
+
+
+	/**
+	 * Release a key by its key code, without needing a KeyEvent.
+	 *
+	 * @param code key code released, such as Settings.KEY_UP.
+	 */
+	public void release(int code) {
 		// If not alive, do not accept controls
 		if (!this.alive) { return; }
-		int code = e.getKeyCode();
 
 		// For all key codes, check to make sure key in opposite direction
 		// has also not been pressed. This makes sure there is no case
@@ -262,7 +284,7 @@ public class Player extends Entity implements KeyListener {
 			rightKeyPressed = false;
 			break;
 		}
-	} /* End method keyReleased */
+	} /* End method release */
 
 	@Override
 	public void keyTyped(KeyEvent e) {}
@@ -0,0 +1,328 @@
+// ------------------------------------------------------------------------- //
+// The Profiler class records how long each part of a frame takes and how    //
+// much memory it allocates, to show on screen and save on exit.             //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  platformer                                                      //
+// Filename: Profiler.java                                                   //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package platformer;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+public class Profiler {
+
+	/**
+	 * Parts of a frame that are measured.
+	 */
+	public enum Section {
+		FRAME("frame"),       // Time between two painted frames
+		PAINT("paint"),       // Game.paint
+		BEAM("beam"),         // Camera.beam
+		DARKEN("darken"),     // Preparing the darkening overlay
+		STEP("step"),         // Game.update: one simulation step
+		ENTITIES("entities"), // Simulation.updateEntities
+		BOXES("boxes"),       // Simulation.checkHittingBox
+		STREAM("stream"),     // Simulation.stream: moving an endless level on
+		SOUND("sound"),       // SoundHandler.playSound
+		MIX("mix");           // Mixing one block of sound
+
+		public final String label; // Name shown on screen and in files
+
+		Section(String label) {
+			this.label = label;
+		} /* End constructor */
+	} /* End enum Section */
+
+	/* Histogram buckets */
+	private static final int SUB_BITS = 4;             // Bits under the top bit kept
+	private static final int SUB = 1 << SUB_BITS;      // Buckets per power of two
+	private static final int BUCKETS = SUB + (63 - SUB_BITS) * SUB; // All longs
+
+	/**
+	 * Timings and allocation of one section.
+	 *
+	 * Times are counted in buckets that grow with the time, as in
+	 * HdrHistogram: every power of two is split into SUB buckets, so a
+	 * percentile is always within about 6% of the true time however long
+	 * it is. Every counter is lock-free, so sections measured in the game
+	 * loop, Swing and mixer threads never wait on each other:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/java/util/concurrent/atomic/LongAdder.html>
+	 */
+	private static class Histogram {
+		AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		LongAdder count = new LongAdder();     // Times recorded
+		LongAdder total = new LongAdder();     // Sum of times (ns)
+		LongAdder allocated = new LongAdder(); // Sum of bytes allocated
+		LongAccumulator max = new LongAccumulator(new LongBinaryOperator() {
+			public long applyAsLong(long a, long b) { return Math.max(a, b); }
+		}, 0);
+
+		/**
+		 * Record one time and its allocation.
+		 */
+		void record(long nanos, long bytes) {
+			this.buckets.incrementAndGet(bucketOf(nanos));
+			this.count.increment();
+			this.total.add(nanos);
+			this.allocated.add(bytes);
+			this.max.accumulate(nanos);
+		} /* End method record */
+
+		/**
+		 * Find the time under which a fraction of recorded times fall.
+		 *
+		 * @param fraction fraction of times, such as 0.99 for the p99.
+		 * @return time in nanoseconds, or 0 if nothing was recorded.
+		 */
+		long percentile(double fraction) {
+			long cnt = this.count.sum();
+			if (cnt == 0) { return 0; }
+
+			long target = Math.max(1, (long)Math.ceil(cnt * fraction));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += this.buckets.get(i);
+				if (seen >= target) {
+					return Math.min(valueOf(i), this.max.get());
+				}
+			}
+			return this.max.get();
+		} /* End method percentile */
+	} /* End class Histogram */
+
+	// Histograms of every section, by ordinal
+	private static final Histogram[] histograms =
+		new Histogram[Section.values().length];
+	static {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new Histogram();
+		}
+	}
+
+	// Counts bytes allocated by a thread; only HotSpot JVMs have it
+	private static final com.sun.management.ThreadMXBean THREADS =
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	// Whether sections are measured; started with -Dgoust.profile=true
+	private static volatile boolean enabled =
+		Boolean.getBoolean(Settings.PROFILE_PROPERTY);
+
+	private static long lastFrame = 0; // Start of last frame (Swing thread)
+
+	/**
+	 * Not meant to be instantiated; all methods are static.
+	 *
+	 * A section is measured by calling `start` and `allocated` before it,
+	 * and `end` after it:
+	 *
+	 *     long start = Profiler.start();
+	 *     long bytes = Profiler.allocated();
+	 *     ... section ...
+	 *     Profiler.end(Profiler.Section.BEAM, start, bytes);
+	 *
+	 * While the Profiler is disabled, `start` returns 0 and `end` does
+	 * nothing, so measuring costs one read of a volatile field.
+	 * Allocation is counted per thread with HotSpot's ThreadMXBean:
+	 *
+	 * <https://docs.oracle.com/en/java/javase/17/docs/api/jdk.management/com/sun/management/ThreadMXBean.html>
+	 */
+	private Profiler() { /* No need to instantiate */ }
+
+
+	/**
+	 * Start or stop measuring sections. Times recorded so far are kept.
+	 */
+	public static void setEnabled(boolean on) { enabled = on; }
+
+	/**
+	 * Check if sections are being measured.
+	 */
+	public static boolean isEnabled() { return enabled; }
+
+
+	/**
+	 * Get the time a section starts at.
+	 *
+	 * @return System.nanoTime(), or 0 if the Profiler is disabled.
+	 */
+	public static long start() {
+		if (!enabled) { return 0; }
+		return System.nanoTime();
+	} /* End method start */
+
+
+	/**
+	 * Get the bytes allocated by the current thread so far.
+	 *
+	 * @return bytes allocated, or 0 if the Profiler is disabled.
+	 */
+	public static long allocated() {
+		if (!enabled) { return 0; }
+		return THREADS.getCurrentThreadAllocatedBytes();
+	} /* End method allocated */
+
+
+	/**
+	 * Record the time and allocation of a section that has ended.
+	 *
+	 * @param section section that ended.
+	 * @param start value of `start` when the section began.
+	 * @param bytes value of `allocated` when the section began.
+	 */
+	public static void end(Section section, long start, long bytes) {
+		// Not measured, or the Profiler was enabled part way through
+		if ((start == 0) || (!enabled)) { return; }
+
+		long nanos = System.nanoTime() - start;
+		long used = THREADS.getCurrentThreadAllocatedBytes() - bytes;
+		histograms[section.ordinal()].record(nanos, Math.max(0, used));
+	} /* End method end */
+
+
+	/**
+	 * Record the time since the last painted frame.
+	 *
+	 * Only called from the Swing thread, once per painted frame.
+	 */
+	public static void frame() {
+		long now = start();
+		if ((now != 0) && (lastFrame != 0)) {
+			histograms[Section.FRAME.ordinal()].record(now - lastFrame, 0);
+		}
+		lastFrame = now;
+	} /* End method frame */
+
+
+	/**
+	 * Describe the times of every measured section, one line each, for
+	 * drawing on screen.
+	 *
+	 * @return lines showing the p50 and p99 time and allocation of each
+	 *         section measured at least once.
+	 */
+	public static String[] summary() {
+		String[] lines = new String[histograms.length];
+		int cnt = 0;
+		for (Section s : Section.values()) {
+			Histogram h = histograms[s.ordinal()];
+			long n = h.count.sum();
+			if (n == 0) { continue; }
+
+			lines[cnt++] = String.format(
+				"%-8s p50 %7.3f ms  p99 %7.3f ms  %8d B",
+				s.label,
+				h.percentile(0.5) / 1000000d,
+				h.percentile(0.99) / 1000000d,
+				h.allocated.sum() / n
+			);
+		}
+
+		String[] ret = new String[cnt];
+		System.arraycopy(lines, 0, ret, 0, cnt);
+		return ret;
+	} /* End method summary */
+
+
+	/**
+	 * Add the times of every measured section to a CSV file.
+	 *
+	 * Rows are added to the end of the file, each marked with the time
+	 * the game was closed, so that runs of different builds can be
+	 * compared. A header is written first if the file is new.
+	 *
+	 * @param path file to add rows to.
+	 * @return true if rows were written, false if nothing was measured or
+	 *         writing failed.
+	 */
+	public static boolean dump(Path path) {
+		String run = LocalDateTime.now().withNano(0).toString();
+		StringBuilder rows = new StringBuilder();
+
+		for (Section s : Section.values()) {
+			Histogram h = histograms[s.ordinal()];
+			long n = h.count.sum();
+			if (n == 0) { continue; }
+
+			rows.append(run).append(',')
+				.append(s.label).append(',')
+				.append(n).append(',')
+				.append(h.total.sum() / n).append(',')
+				.append(h.percentile(0.5)).append(',')
+				.append(h.percentile(0.9)).append(',')
+				.append(h.percentile(0.99)).append(',')
+				.append(h.max.get()).append(',')
+				.append(h.allocated.sum() / n).append('\n');
+		}
+		if (rows.length() == 0) { return false; } // Nothing measured
+
+		try {
+			if (!Files.exists(path)) {
+				rows.insert(0, "run,section,count,mean_ns,p50_ns,p90_ns,"
+					+ "p99_ns,max_ns,bytes_per_op\n");
+			}
+			Files.write(
+				path, rows.toString().getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND
+			);
+		} catch (IOException e) {
+			return false;
+		}
+		return true;
+	} /* End method dump */
+
+
+	/**
+	 * Get the CSV file in the user's home directory that measurements are
+	 * added to when the game closes (Settings.PROFILE_FILE).
+	 */
+	public static Path getDumpPath() {
+		return Paths.get(System.getProperty("user.home"), Settings.PROFILE_FILE);
+	} /* End method getDumpPath */
+
+
+	/**
+	 * Find the bucket a time is counted in.
+	 *
+	 * Times under SUB have a bucket each. Larger times are sorted by their
+	 * highest set bit, then by the SUB_BITS bits under it.
+	 */
+	private static int bucketOf(long nanos) {
+		if (nanos < SUB) { return (int)Math.max(0, nanos); }
+
+		int top = 63 - Long.numberOfLeadingZeros(nanos); // Highest set bit
+		int sub = (int)((nanos >>> (top - SUB_BITS)) & (SUB - 1));
+		return SUB + (top - SUB_BITS) * SUB + sub;
+	} /* End method bucketOf */
+
+
+	/**
+	 * Find the highest time counted in a bucket.
+	 */
+	private static long valueOf(int bucket) {
+		if (bucket < SUB) { return bucket; }
+
+		int top = (bucket - SUB) / SUB + SUB_BITS;
+		long sub = (bucket - SUB) % SUB;
+		long width = 1L << (top - SUB_BITS); // Times in the bucket
+		return ((SUB + sub) << (top - SUB_BITS)) + width - 1;
+	} /* End method valueOf */
+
+} /* End class Profiler */
@@ -18,9 +18,42 @@ import java.awt.event.KeyEvent;
 
 public class Settings {
 
+	// Latest copy of all changeable settings, read without locking.
+	// Replaced as a whole whenever a setting changes.
+	private static volatile Snapshot current;
+
 	// Create only one "global" instance of Settings for all game-wide settings.
 	private static Settings inst = new Settings(); // Store all settings
 
+	/**
+	 * Unchangeable copy of every changeable setting at one moment.
+	 *
+	 * Reading one snapshot, then using its values, gives settings that
+	 * all belong together, even if another thread changes them at the
+	 * same time.
+	 */
+	public static final class Snapshot {
+		public final int resX;
+		public final int resY;
+		public final double zoom;
+		public final double levelWidth;
+		public final double levelHeight;
+		public final double brightness;
+		public final double maxFps;
+		public final boolean catchUp;
+
+		private Snapshot(Settings s) {
+			this.resX = s.resX;
+			this.resY = s.resY;
+			this.zoom = s.zoom;
+			this.levelWidth = s.levelWidth;
+			this.levelHeight = s.levelHeight;
+			this.brightness = s.brightness;
+			this.maxFps = s.maxFps;
+			this.catchUp = s.catchUp;
+		} /* End constructor */
+	} /* End class Snapshot */
+
 	/**
 	 * Stores all game-wide values.
 	 *
@@ -30,14 +63,41 @@ public class Settings {
 	 *
 	 * Data protection is achieved through use of getters / setters.
 	 *
-	 * Thread-safety, although mostly irrelevant as the updater thread's
-	 * resources are not used by any other threads in Game.java, is
-	 * achieved with `synchronized` statements. Docs I referenced
-	 * (no code was directly taken):
+	 * Setters are `synchronized` so that two changes at once are not
+	 * lost. Docs I referenced (no code was directly taken):
 	 *
 	 * <https://docs.oracle.com/javase/tutorial/essential/concurrency/locksync.html>
+	 *
+	 * Getters are called in the hottest loops of the game, so they do not
+	 * lock. Each change publishes a new Snapshot through a volatile field,
+	 * which every thread sees as soon as it is written:
+	 *
+	 * <https://docs.oracle.com/javase/specs/jls/se17/html/jls-17.html#jls-17.4.5>
+	 */
+	private Settings() {
+		this.publish(); // Snapshot of default settings
+	} /* End constructor */
+
+
+	/**
+	 * Get the current snapshot of all changeable settings.
+	 *
+	 * Loops that need several settings should read the snapshot once and
+	 * use its fields, rather than calling each getter.
+	 */
+	public static Snapshot snapshot() {
+		return current;
+	} /* End method snapshot */
+
+
+	/**
+	 * Publish a new snapshot after a setting has changed.
+	 *
+	 * Only called while holding the lock of the Settings.
 	 */
-	private Settings() { /* No need to instantiate */ }
+	private void publish() {
+		current = new Snapshot(this);
+	} /* End method publish */
 
 
 	/**
@@ -57,14 +117,14 @@ public class Settings {
 	 * Return width of screen in pixels.
 	 */
 	public static int resX() {
-		synchronized(inst) { return inst.resX; }
+		return current.resX;
 	} /* End method resX */
 
 	/**
 	 * Set width of screen in pixels.
 	 */
 	public void setResX(int width) {
-		synchronized(this) { this.resX = width; }
+		synchronized(this) { this.resX = width; this.publish(); }
 	} /* End method setResX */
 
 
@@ -74,14 +134,14 @@ public class Settings {
 	 * Return height of screen in pixels.
 	 */
 	public static int resY() {
-		synchronized(inst) { return inst.resY; }
+		return current.resY;
 	} /* End method resY */
 
 	/**
 	 * Set height of screen in pixels.
 	 */
 	public void setResY(int height) {
-		synchronized(this) { this.resY = height; }
+		synchronized(this) { this.resY = height; this.publish(); }
 	} /* End method setResY */
 
 
@@ -91,14 +151,14 @@ public class Settings {
 	 * Return zoom of level.
 	 */
 	public static double zoom() {
-		synchronized(inst) { return inst.zoom; }
+		return current.zoom;
 	} /* End method zoom */
 
 	/**
 	 * Set zoom of level.
 	 */
 	public void setZoom(double zoom) {
-		synchronized(this) { this.zoom = zoom; }
+		synchronized(this) { this.zoom = zoom; this.publish(); }
 	} /* End method setZoom */
 
 
@@ -108,14 +168,14 @@ public class Settings {
 	 * Return width of current level in pixels.
 	 */
 	public static double levelWidth() {
-		synchronized(inst) { return inst.levelWidth; }
+		return current.levelWidth;
 	} /* End method levelWidth */
 
 	/**
 	 * Set width of current level in pixels.
 	 */
 	public void setLevelWidth(double width) {
-		synchronized(this) { this.levelWidth = width; }
+		synchronized(this) { this.levelWidth = width; this.publish(); }
 	} /* End method setLevelWidth */
 
 
@@ -125,14 +185,14 @@ public class Settings {
 	 * Return height of current level in pixels.
 	 */
 	public static double levelHeight() {
-		synchronized(inst) { return inst.levelHeight; }
+		return current.levelHeight;
 	} /* End method zoom */
 
 	/**
 	 * Set height of current level in pixels.
 	 */
 	public void setLevelHeight(double height) {
-		synchronized(this) { this.levelHeight = height; }
+		synchronized(this) { this.levelHeight = height; this.publish(); }
 	} /* End method setZoom */
 
 
@@ -146,26 +206,104 @@ public class Settings {
 	 * can see further away from themselves.
 	 */
 	public static double brightness() {
-		synchronized(inst) { return inst.brightness; }
+		return current.brightness;
 	} /* End method zoom */
 
 	/**
 	 * Set brightness of current level.
 	 */
 	public void setBrightness(double brightness) {
-		synchronized(this) { this.brightness = brightness; }
+		synchronized(this) { this.brightness = brightness; this.publish(); }
 	} /* End method setZoom */
 
 
+	private double maxFps = 60d; // Most frames drawn per second
+
+	/**
+	 * Return the most frames drawn per second.
+	 *
+	 * The game is still simulated FRAMES_SEC times per second; frames
+	 * drawn in between simulation steps are interpolated.
+	 */
+	public static double maxFps() {
+		return current.maxFps;
+	} /* End method maxFps */
+
+	/**
+	 * Set the most frames drawn per second (at least 1).
+	 */
+	public void setMaxFps(double maxFps) {
+		synchronized(this) { this.maxFps = Math.max(1d, maxFps); this.publish(); }
+	} /* End method setMaxFps */
+
+
+	private boolean catchUp = false; // Simulate time missed by sleeping entities
+
+	/**
+	 * Return whether entities waking up near the player should catch up
+	 * on the time they slept through.
+	 */
+	public static boolean catchUp() {
+		return current.catchUp;
+	} /* End method catchUp */
+
+	/**
+	 * Set whether sleeping entities catch up on missed time when woken.
+	 */
+	public void setCatchUp(boolean catchUp) {
+		synchronized(this) { this.catchUp = catchUp; this.publish(); }
+	} /* End method setCatchUp */
+
+
 	/* Game string constants */
 	public static final String TITLE = "Go Oust!"; // Name of game
 	public static final String DESCRIPTION = "Help Oust the alien reach the flag!";
-	public static final String CONTROLS = "W to jump; A and D to move sideways";
+	public static final String CONTROLS = "W to jump; A and D to move sideways; P to pause";
 	public static final String FILE_EXT = "lvl";   // File extension for levels
+	public static final String FILE_EXT_COMPILED = "lvlb"; // Compiled levels
+
+	/* Compiled level constants */
+	public static final int   LVLB_MAGIC = 0x4C564C42; // "LVLB" at file start
+	public static final short LVLB_VERSION = 1;        // Version of the format
+
+	/* Geometry cache constants */
+	public static final String GEO_DIR = ".goust-cache"; // Folder in user's home
+	public static final String FILE_EXT_GEO = "geo";     // Cached geometry files
+	public static final int   GEO_MAGIC = 0x47454F43;    // "GEOC" at file start
+	public static final short GEO_VERSION = 1;           // Version of the format
+
+	/* Level generator constants */
+	public static final int GEN_ROWS = 20;     // Rows of generated levels
+	public static final int GEN_MIN_ROWS = 16; // Fewest rows features fit in
+	public static final int GEN_CHUNK = 32;    // Columns generated at a time
+
+	/* Endless world constants */
+	public static final String ENDLESS_NAME = "Endless"; // Menu entry of endless world
+	public static final int STREAM_CHUNKS = 6; // Generated chunks loaded at once
+	public static final int STREAM_AHEAD = 3;  // Chunks kept ahead of the player
+	public static final int STREAM_QUEUE = 2;  // Chunks built ahead in the background
+
+	/* Sound constants */
+	public static final float MIX_RATE = 44100f; // Samples per second of mixed sound
+	public static final int MIX_VOICES = 16;     // Most sounds playing at once
+	public static final int MIX_FRAMES = 512;    // Frames mixed at a time (about 12 ms)
+	public static final int STREAM_BYTES = 262144; // Larger sound files are streamed
+
+	/* Profiler constants */
+	public static final String PROFILE_PROPERTY = "goust.profile"; // Enables at start
+	public static final String PROFILE_FILE = ".goust-profile.csv"; // In user's home
+	public static final long   PROFILE_REFRESH = 250000000L; // Overlay update (ns)
+	public static final float  FONT_HUD = 14f;               // Overlay font size
 
 	/* Game units */
 	public static final int UNIT = 35; // Tile size at 1x zoom
 	public static final int SEP = 0;   // Separator between tiles in spritesheet
+	public static final int CHUNK = 8; // Tiles per side of one cached chunk of level
+	public static final int HASH_CELL = 4; // Tiles per side of one SpatialHash cell
+	public static final int ACTIVE_MARGIN = 8; // Tiles around screen where entities move
+	public static final int LOAD_BAND = 4; // Most rows of a level built by one thread
+	public static final int CACHE_LEVELS = 4; // Loaded levels kept for quick starts
+	public static final int CACHE_ZOOMS = 3;  // Zooms of spritesheets kept loaded
 
 	/* Game constants */
 	public static final double TIME_END = 200; // Time to end level after player death / victory
@@ -180,16 +318,24 @@ public class Settings {
 
 	// Gradient colour of darkening effect of levels
 	public static final Color COLOUR_GRADIENT = new Color(0, 0, 0, 200);
+	public static final int LIGHT_SCALE = 8; // Torch light is stored at 1/8 size
+	public static final int LIGHT_MARGIN = 32; // Torch light kept past the screen (at 1/8 size)
 
 	/* Control constants */
 	public static final int KEY_UP = KeyEvent.VK_W;    // Up keybinding
 	public static final int KEY_DOWN = KeyEvent.VK_S;  // Down keybinding
 	public static final int KEY_LEFT = KeyEvent.VK_A;  // Left keybinding
 	public static final int KEY_RIGHT = KeyEvent.VK_D; // Right keybinding
+	public static final int KEY_PAUSE = KeyEvent.VK_P; // Pause keybinding
+	public static final int KEY_PROFILE = KeyEvent.VK_F3; // Profiler overlay
 
 	/* Display constants */
 	public static final double FRAMES_SEC = 120d; // Frames per second of game
 	public static final double NANOS = 1000000000d / FRAMES_SEC; // Wait of game loop
+	public static final double STEP = 1d;        // Time of one simulation step
+	public static final double MAX_LAG = 10d;    // Most time simulated at once
+	public static final int    CATCH_UP = 120;   // Most steps caught up on waking
+	public static final long   EFFECT_STEPS = 1200; // Steps timed item effects last (10 s)
 	public static final float  SCORE_SEP = 25; // Separation between score
 	public static final float  FONT_LARGE = 80f; // Large font
 
@@ -211,5 +357,6 @@ public class Settings {
 	public static final double E_MAX_SPD = 2;    // Entity max velocity
 	public static final double E_MIN_SPD = 0.2;  // Entity minimum velocity
 	public static final double E_GRAVITY = 0.09; // Entity default gravity
+	public static final int    E_MAX_MOVE = 1000; // Max pixels moved per frame
 
 } /* End class Settings */
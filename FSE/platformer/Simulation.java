@@ -0,0 +1,679 @@
+// ------------------------------------------------------------------------- //
+// The Simulation class steps the player and entities of one level, with no  //
+// window needed. The Game draws a Simulation, while tests and benchmarks    //
+// may run one headless with scripted input.                                 //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  platformer                                                      //
+// Filename: Simulation.java                                                 //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package platformer;
+
+import java.awt.geom.Area;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class Simulation {
+
+	/**
+	 * One scripted key press or release.
+	 */
+	private static class Input {
+		long step;       // Steps taken before the key changes
+		int code;        // Key code, such as Settings.KEY_UP
+		boolean pressed; // Whether the key is pressed or released
+
+		Input(long step, int code, boolean pressed) {
+			this.step = step;
+			this.code = code;
+			this.pressed = pressed;
+		} /* End constructor */
+	} /* End class Input */
+
+	private Level lvl;       // Level being simulated
+	private Player player;   // Player of the level
+
+	// Spritesheets of entities, used for coins from item boxes
+	private SpriteHandler[] handleEntities;
+
+	// Store entities in the level (moving sprites)
+	private ArrayList<Entity> entities = new ArrayList<Entity>();
+	private SpatialHash hash; // Entities sorted by position in the level
+
+	// Lists reused every step while updating entities
+	private ArrayList<Entity> active = new ArrayList<Entity>();   // Awake
+	private ArrayList<Entity> nearby = new ArrayList<Entity>();   // Near player
+	private ArrayList<Entity> toRemove = new ArrayList<Entity>(); // To remove
+
+	// Area around the screen where entities are awake
+	private Rectangle2D.Double region = new Rectangle2D.Double();
+	private long step = 0; // Simulation steps taken in the level
+
+	// Timed effects of entities in the level, counted in steps
+	private EffectScheduler effects = new EffectScheduler();
+
+	private double clock = 0d;           // Timer of constant level events
+	private boolean endSequence = false; // Player has died or won
+
+	private Random rand = new Random(); // Picks coins from item boxes
+
+	private WorldStream stream = null; // Chunks of an endless level, if any
+
+	// Scripted input not yet given to the player, in order of step
+	private ArrayList<Input> script = new ArrayList<Input>();
+	private int nextInput = 0; // Index of next scripted input
+
+	/**
+	 * Create a Simulation of a level, with the player at its start.
+	 *
+	 * A Simulation holds everything that changes while a level is played,
+	 * and nothing used to show it: no window, Camera or KeyListener is
+	 * needed, so a level may be stepped as fast as the computer allows,
+	 * such as in tests and benchmarks. Input is given by key code with
+	 * `press` and `release`, or scripted ahead of time with `script`.
+	 *
+	 * Sets the zoom and level size of Settings to those of the level, as
+	 * entities use them while moving. A level changes as it is played
+	 * (item boxes are used up and entities move), so each Simulation
+	 * should be given a fresh copy.
+	 *
+	 * @param lvl loaded level to simulate.
+	 * @param handleP1 spritesheet of the player.
+	 * @param handleEntities spritesheets of entities, by EntityType costume.
+	 */
+	public Simulation(
+		Level lvl, SpriteHandler handleP1, SpriteHandler[] handleEntities
+	) {
+		this.lvl = lvl;
+		this.handleEntities = handleEntities;
+
+		// Set zoom and size of global Settings to those of level
+		Settings.get().setZoom(lvl.getZoom());
+		Settings.get().setLevelWidth(lvl.getWidth());
+		Settings.get().setLevelHeight(lvl.getHeight());
+
+		// Create player in level's starting position
+		Point2D pSpawn = lvl.getPlayerStart();
+		this.player = new Player(
+			pSpawn.getX(),
+			pSpawn.getY(),
+			handleP1,
+			null // Do not apply any attributes yet
+		);
+		// Load entities from level
+		this.entities.addAll(lvl.getEntities());
+
+		// Sort entities by position so only those near the player are
+		// checked against it
+		this.hash = new SpatialHash(
+			lvl.getWidth(), lvl.getHeight(),
+			Settings.HASH_CELL * Settings.UNIT * lvl.getZoom()
+		);
+		for (Entity ent : this.entities) { this.hash.add(ent); }
+
+		// Wake the entities around the starting screen
+		this.findActive();
+	} /* End constructor */
+
+
+	/**
+	 * Pick coins from item boxes with a fixed seed, so that the same
+	 * scripted input always plays out the same way.
+	 *
+	 * @param seed seed of the random number generator.
+	 */
+	public void setSeed(long seed) { this.rand = new Random(seed); }
+
+
+	/**
+	 * Stream chunks of an endless level into the level while it is played.
+	 *
+	 * The level must be the window made by the stream's `createLevel`.
+	 *
+	 * @param stream stream of chunks, or null for a level of fixed size.
+	 */
+	public void setStream(WorldStream stream) { this.stream = stream; }
+
+
+	/**
+	 * Press a key for the player now.
+	 *
+	 * @param code key code, such as Settings.KEY_UP.
+	 */
+	public void press(int code) { this.player.press(code); }
+
+
+	/**
+	 * Release a key for the player now.
+	 *
+	 * @param code key code, such as Settings.KEY_UP.
+	 */
+	public void release(int code) { this.player.release(code); }
+
+
+	/**
+	 * Press or release a key after a number of steps have been taken.
+	 *
+	 * Scripted input is given to the player at the start of `update`,
+	 * before the step is taken, in the order it was scripted.
+	 *
+	 * @param step number of steps taken before the key changes.
+	 * @param code key code, such as Settings.KEY_UP.
+	 * @param pressed true to press the key, false to release it.
+	 */
+	public void script(long step, int code, boolean pressed) {
+		// Insert after every input of the same or an earlier step
+		int i = this.script.size();
+		while ((i > this.nextInput) && (this.script.get(i - 1).step > step)) {
+			i--;
+		}
+		this.script.add(i, new Input(step, code, pressed));
+	} /* End method script */
+
+
+	/**
+	 * Remember positions of player and awake entities before a simulation
+	 * step, for drawing frames between steps.
+	 *
+	 * Sleeping entities do not move, and remember their position when
+	 * they wake up. Only needed if the Simulation is being drawn.
+	 */
+	public void savePositions() {
+		this.player.savePosition();
+		for (int i = 0; i < this.active.size(); i++) {
+			this.active.get(i).savePosition();
+		}
+	} /* End method savePositions */
+
+
+	/**
+	 * Find the entities that are awake: those within the screen or
+	 * Settings.ACTIVE_MARGIN tiles of it.
+	 *
+	 * Entities further away sleep; they are not updated until the screen
+	 * comes near them again. Which entities are awake only depends on the
+	 * position of the screen, so the same inputs always wake the same
+	 * entities at the same steps.
+	 */
+	private void findActive() {
+		double margin = Settings.ACTIVE_MARGIN * Settings.UNIT * Settings.zoom();
+
+		Camera.findView(this.player, 1d, this.region);
+		this.region.setRect(
+			this.region.x - margin,
+			this.region.y - margin,
+			this.region.width + margin * 2,
+			this.region.height + margin * 2
+		);
+		this.hash.query(this.region, this.active);
+	} /* End method findActive */
+
+
+	/**
+	 * Take one simulation step.
+	 *
+	 * Updates only apply to entities as level tiles are pre-calculated
+	 * during level load.
+	 *
+	 * @param diffT "difference in time" time adjustment per step.
+	 */
+	public void update(double diffT) {
+		/* Give scripted input due this step */
+		while ((this.nextInput < this.script.size())
+			&& (this.script.get(this.nextInput).step <= this.step)) {
+			Input in = this.script.get(this.nextInput++);
+			if (in.pressed) {
+				this.press(in.code);
+			} else {
+				this.release(in.code);
+			}
+		}
+
+		/* Update clock */
+		this.clock += diffT; // add diffT to the clock
+
+		/* Get areas to use to update entities */
+		CollisionGrid bounds = this.lvl.getBounds();       // get impassable areas
+		CollisionGrid climbable = this.lvl.getClimbable(); // get climbable areas
+		CollisionGrid deadly = this.lvl.getDeadly();       // get deadly areas
+
+		/* Update player */
+		// Update player first, then other entities in order of precedence
+		if (!player.isAlive() && !this.endSequence) {
+			// Do not keep resetting end sequence if already set
+			this.beginEndSequence();
+		} else {
+			player.update(diffT, bounds, climbable, deadly);
+		}
+
+		// Check if player hit item box (dynamically create items)
+		long start = Profiler.start();
+		long bytes = Profiler.allocated();
+		checkHittingBox();
+		Profiler.end(Profiler.Section.BOXES, start, bytes);
+
+		/* Update other entities */
+		start = Profiler.start();
+		bytes = Profiler.allocated();
+		updateEntities(diffT, bounds, deadly);
+		Profiler.end(Profiler.Section.ENTITIES, start, bytes);
+
+		/* Move endless level on */
+		start = Profiler.start();
+		bytes = Profiler.allocated();
+		stream();
+		Profiler.end(Profiler.Section.STREAM, start, bytes);
+	} /* End method update */
+
+
+	/**
+	 * Begin end screen of either victory or death for player.
+	 *
+	 * Resets the clock of the level to display the message for n ticks.
+	 * The level is over after that time (see `isOver`).
+	 */
+	public void beginEndSequence() {
+		// Already set; no need to do it again
+		if (this.endSequence) { return; }
+
+		this.clock = 0d;
+		this.endSequence = true;
+	} /* End method beginEndSequence */
+
+
+	/**
+	 * Update all awake entities of the level.
+	 *
+	 * Only entities around the screen are moved, and only the entities
+	 * found near the player through the SpatialHash are checked for
+	 * touching the player, so levels with thousands of entities do not
+	 * check every one of them.
+	 *
+	 * An entity waking up after sleeping may first catch up on up to
+	 * Settings.CATCH_UP of the steps it missed, if Settings.catchUp() is
+	 * on. This happens outside of the screen, so the jump is not seen.
+	 *
+	 * @param diffT "difference in time" time adjustment per frame.
+	 * @param bounds level collision boxes for entities to be aware of and
+	 *               which entities should not go into.
+	 * @param deadly level collision boxes for areas deadly to entities.
+	 */
+	private void updateEntities(
+		double diffT, CollisionGrid bounds, CollisionGrid deadly
+	) {
+		Entity ent; // Store the current entity during iteration.
+
+		// Store entities to be removed in a reused list
+		this.toRemove.clear();
+		this.step++;
+
+		// Expire effects whose time is up
+		this.effects.update(this.step);
+
+		// Find entities that should be awake this step
+		this.findActive();
+		boolean catchUp = Settings.catchUp(); // Read once per step
+
+		// Iterate over all awake entities in the level
+		for (int i = 0; i < this.active.size(); i++) {
+			ent = this.active.get(i); // get entity from level
+
+			long missed = this.step - ent.lastStep - 1; // Steps slept
+			if (missed > 0) {
+				// Entity has just woken up
+				if (catchUp) {
+					missed = Math.min(missed, Settings.CATCH_UP);
+					for (long j = 0; j < missed; j++) {
+						ent.update(diffT, bounds);
+					}
+				}
+				ent.savePosition(); // Do not slide from where it slept
+			}
+			ent.lastStep = this.step;
+
+			ent.update(diffT, bounds);  // update awake entities
+			this.hash.move(ent);        // keep entity in the right cell
+
+			if ((!ent.isAlive()) || deadly.intersects(ent.getBounds())) {
+				// If Entity is touching deadly area or
+				// Entity is dead, remove from level
+				this.toRemove.add(ent);
+			}
+		}
+
+		// Only entities touching the player can affect the player
+		this.getEntitiesNear(player.getBounds(), this.nearby);
+
+		for (int i = 0; i < this.nearby.size(); i++) {
+			ent = this.nearby.get(i);
+
+			// Entity is already being removed; skip to next entity
+			if ((!ent.isAlive()) || deadly.intersects(ent.getBounds())) {
+				continue;
+			}
+
+			// `instanceof` checks if Entity is further a member
+			// of a specific Entity subclass
+			if (ent instanceof Enemy) {
+				/* Handle enemy-specific updates */
+				// If player touching enemy, player dies.
+				if (player.isTouching(ent.getBounds())) {
+					// Play hitting sound
+					SoundHandler.get().playSound("SOUND_HIT", false);
+					player.die();
+					this.beginEndSequence(); // End level
+				}
+			} else if (ent instanceof Flag) {
+				/* Handle flag-specific updates */
+				if (player.isTouching(ent.getBounds())) {
+					// Player win condition
+					this.beginEndSequence(); // End level
+				}
+			} else if (ent instanceof Item) {
+				/* Handle item-specific updates */
+				Item item = (Item) ent;
+				if (item.isTouching(player.getBounds())) {
+					// Play application sound
+					SoundHandler.get().playSound("SOUND_COIN", false);
+					// Apply item attribute to player; buffs only
+					// last for a time
+					if (this.isTimed(item.getAttribute())) {
+						this.effects.apply(player, new Effect(
+							item.getAttribute(), Settings.EFFECT_STEPS
+						));
+					} else {
+						player.applyAttribute(item.getAttribute());
+					}
+					// Item is expended
+					this.toRemove.add(item);
+				}
+			}
+		}
+
+		// Remove any items queued
+		for (int i = 0; i < this.toRemove.size(); i++) {
+			this.entities.remove(this.toRemove.get(i));
+			this.active.remove(this.toRemove.get(i));
+			this.hash.remove(this.toRemove.get(i));
+		}
+	} /* End method updateEntities */
+
+
+	/**
+	 * Move an endless level on once the player nears its right edge.
+	 *
+	 * Once fewer than Settings.STREAM_AHEAD chunks are left ahead of the
+	 * player, the next chunk is taken from the WorldStream and shifted
+	 * into the level (see Level.shift), while the player and every entity
+	 * are moved left by the same amount. The player stays in the same
+	 * place in the world, but the level, SpatialHash and Settings never
+	 * grow, however far the player goes. Entities that fall off the left
+	 * of the level are forgotten.
+	 *
+	 * Chunks are built in the background ahead of time, so this never
+	 * waits: if the next chunk is not ready yet, the level is moved on in
+	 * a later step, while the player still has chunks left to cross.
+	 */
+	private void stream() {
+		if (this.stream == null) { return; } // Level has a fixed size
+
+		// Wait until the player is near enough to the right edge
+		double chunkW = Settings.GEN_CHUNK * Settings.UNIT * this.lvl.getZoom();
+		double edge = this.lvl.getWidth() - Settings.STREAM_AHEAD * chunkW;
+		if (this.player.getBounds().x < edge) { return; }
+
+		Level chunk = this.stream.poll();
+		if (chunk == null) { return; } // Not built yet; try next step
+
+		/* Move everything left with the level */
+		double dx = chunk.getWidth();
+		this.player.shiftX(-dx);
+
+		for (int i = this.entities.size() - 1; i >= 0; i--) {
+			Entity ent = this.entities.get(i);
+			ent.shiftX(-dx);
+
+			// Forget entities that fell off the left of the level
+			if (ent.getBounds().getMaxX() <= 0) { this.entities.remove(i); }
+		}
+
+		/* Add the new chunk */
+		this.lvl.shift(chunk, this.entities);
+		this.entities.addAll(chunk.getEntities());
+
+		// Every entity moved, so sort them into cells again
+		this.hash.clear();
+		for (int i = 0; i < this.entities.size(); i++) {
+			this.hash.add(this.entities.get(i));
+		}
+		this.findActive();
+	} /* End method stream */
+
+
+	/**
+	 * Check if an attribute given by an item only lasts for a time.
+	 *
+	 * Coins are kept forever; buffs such as extra health or double-jumps
+	 * expire after Settings.EFFECT_STEPS simulation steps.
+	 */
+	private boolean isTimed(Attribute attr) {
+		return (attr == Attribute.HP_1) || (attr == Attribute.DOUBLE_JUMP);
+	} /* End method isTimed */
+
+
+	/**
+	 * Find the entities of the level touching an area.
+	 *
+	 * @param area area of the level to search, in pixels.
+	 * @param out list to store found entities in; it is cleared first.
+	 */
+	public void getEntitiesNear(Rectangle2D area, ArrayList<Entity> out) {
+		this.hash.query(area, out);
+	} /* End method getEntitiesNear */
+
+
+	/**
+	 * Check if player is hitting any item boxes of the level.
+	 *
+	 * Itemboxes randomly generate rewards for the player in the form
+	 * of items appearing on top of them.
+	 */
+	private void checkHittingBox() {
+		// Get locations of all boxes currently in the level.
+		SpecBounds boxes = this.lvl.getSpecBounds();
+
+		// Check if box contains point right above player's head.
+		// If box does contain point, remove box
+		// Settings.P_SPACE contains location above player's head used
+		Area boxLocation = (Area) boxes.containsRemove(
+			player.getCentreX(),
+			player.getPoint().getY() - Settings.P_SPACE
+		);
+
+		if (boxLocation == null) {
+			// Player didn't hit any box with head; exit
+			return;
+		}
+		// Player did hit item box. Get and store coordinates from box.
+		Rectangle2D bounds = boxLocation.getBounds2D();
+
+		// Create random coin at location
+		Item coin = Item.randomCoin(
+			bounds.getX(), // X coordinates
+
+			// Y coordinate is equal to one unit higher than item box
+			bounds.getY() - (Settings.UNIT * Settings.zoom()),
+			handleEntities[EntityType.G_COIN.costume], // Coin sprite
+			this.rand
+		);
+		coin.lastStep = this.step; // Coin starts awake
+		entities.add(coin);
+		this.hash.add(coin);
+	} /* End method checkHittingBox */
+
+
+	/**
+	 * Clear the level's entities and effects once it is no longer played.
+	 */
+	public void clear() {
+		this.entities.clear();
+		this.active.clear();
+		this.effects.clear(0);
+	} /* End method clear */
+
+
+	/**
+	 * Get the player of the level.
+	 */
+	public Player getPlayer() { return this.player; }
+
+	/**
+	 * Get the entities awake this step.
+	 */
+	public ArrayList<Entity> getActive() { return this.active; }
+
+	/**
+	 * Get the number of entities left in the level.
+	 */
+	public int getEntityCount() { return this.entities.size(); }
+
+	/**
+	 * Get the number of simulation steps taken.
+	 */
+	public long getStep() { return this.step; }
+
+	/**
+	 * Get the time passed in the level, or since the end sequence began.
+	 */
+	public double getClock() { return this.clock; }
+
+	/**
+	 * Check if the player has died or won.
+	 */
+	public boolean isEndSequence() { return this.endSequence; }
+
+	/**
+	 * Check if the end message has been shown for Settings.TIME_END, and
+	 * the level should be exited.
+	 */
+	public boolean isOver() {
+		return this.endSequence && (this.clock > Settings.TIME_END);
+	} /* End method isOver */
+
+
+	/**
+	 * Step a level headless as fast as possible, and report the number of
+	 * simulation steps taken per second.
+	 *
+	 * No window is opened; spritesheets are still loaded, as the bounds of
+	 * the player and entities come from them. Scripted input is given as
+	 * `<step>:+<key>` to press a key after that many steps, or
+	 * `<step>:-<key>` to release it, where the key is a letter. Without
+	 * any, the player walks right and jumps every so often.
+	 *
+	 * The level Settings.ENDLESS_NAME is an endless level streamed from a
+	 * WorldStream with a seed of 0.
+	 *
+	 * Run from the FSE/platformer directory (with resources copied next
+	 * to the classes):
+	 *
+	 *     javac -d out *.java && cp -r resources out
+	 *     java -cp out platformer.Simulation "1. The Beginning.lvl" 1 100000 0:+D 5:+W 6:-W
+	 *
+	 * @param args level name, zoom, number of steps, then scripted input.
+	 */
+	public static void main(String[] args) {
+		// Nothing is shown, so AWT does not need a display
+		System.setProperty("java.awt.headless", "true");
+
+		if (args.length == 0) {
+			System.out.println(
+				"Usage: Simulation <level> [zoom] [steps] [<step>:(+|-)<key> ...]"
+			);
+			return;
+		}
+		String name = args[0];
+		double zoom = (args.length > 1) ? Double.parseDouble(args[1]) : 1d;
+		long steps = (args.length > 2) ? Long.parseLong(args[2]) : 100000;
+
+		/* Load level */
+		AssetLoader loader = new AssetLoader(null); // No menu to report to
+		AssetLoader.Sprites graphics;
+		Level lvl;
+		WorldStream stream = null;
+		try {
+			graphics = loader.getSprites(zoom).get();
+			if (name.equals(Settings.ENDLESS_NAME)) {
+				stream = new WorldStream(
+					0, LevelGenerator.biomeOf(0),
+					graphics.tiles, graphics.entities, zoom
+				);
+				lvl = stream.createLevel();
+			} else {
+				lvl = loader.getLevel(name, zoom).get();
+			}
+		} catch (Exception e) {
+			graphics = null;
+			lvl = null;
+		}
+		if ((graphics == null) || (lvl == null)) {
+			System.out.println("Failed to load " + name);
+			return;
+		}
+
+		Simulation sim = new Simulation(lvl, graphics.player, graphics.entities);
+		sim.setSeed(0); // Same coins every run
+		sim.setStream(stream);
+
+		/* Script input */
+		if (args.length > 3) {
+			for (int i = 3; i < args.length; i++) {
+				String arg = args[i];
+				int colon = arg.indexOf(':');
+				// Key codes of letters are their capitals (see KeyEvent)
+				sim.script(
+					Long.parseLong(arg.substring(0, colon)),
+					Character.toUpperCase(arg.charAt(colon + 2)),
+					arg.charAt(colon + 1) == '+'
+				);
+			}
+		} else {
+			// Walk right, jumping every Settings.FRAMES_SEC steps
+			sim.script(0, Settings.KEY_RIGHT, true);
+			for (long s = 0; s < steps; s += (long)Settings.FRAMES_SEC) {
+				sim.script(s, Settings.KEY_UP, true);
+				sim.script(s + 1, Settings.KEY_UP, false);
+			}
+		}
+
+		/* Step level */
+		long start = System.nanoTime();
+		while ((sim.getStep() < steps) && (!sim.isOver())) {
+			sim.update(Settings.STEP);
+		}
+		double secs = (System.nanoTime() - start) / 1000000000d;
+
+		Player p = sim.getPlayer();
+		System.out.printf(
+			"%d steps in %.3f s (%.0f steps/s)%n",
+			sim.getStep(), secs, sim.getStep() / secs
+		);
+		System.out.printf(
+			"player at (%.1f, %.1f), %s, %d coins, %d entities left%n",
+			p.getPoint().getX(), p.getPoint().getY(),
+			p.isAlive() ? "alive" : "dead", p.getCoins(), sim.getEntityCount()
+		);
+		if (stream != null) {
+			stream.close();
+			System.out.printf("%d columns streamed%n", lvl.getShifted());
+		}
+	} /* End method main */
+
+} /* End class Simulation */
@@ -14,7 +14,9 @@
 package platformer;
 
 import javax.sound.sampled.*;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.io.*;
 import java.net.URL;
 
@@ -23,8 +25,62 @@ public class SoundHandler {
 	// Create only one "global" instance of SoundHandler
 	private static SoundHandler inst = new SoundHandler(); // Store all sounds
 
+	// Format every sound is converted to, and mixed in: signed 16-bit,
+	// stereo, little-endian
+	private static final AudioFormat FORMAT = new AudioFormat(
+		Settings.MIX_RATE, 16, 2, true, false
+	);
+
 	// Store sounds as within a hashmap so they can be accessed by key
-	private HashMap<String, Clip> soundmap = new HashMap<String, Clip>(); 
+	private ConcurrentHashMap<String, Sound> soundmap =
+		new ConcurrentHashMap<String, Sound>();
+
+	// Sounds to start or stop, sent to the mixer thread
+	private ConcurrentLinkedQueue<Command> commands =
+		new ConcurrentLinkedQueue<Command>();
+
+	private SourceDataLine line = null; // Line all sounds are mixed into
+	private Thread mixer = null;        // Thread mixing sounds
+
+	/* Voices, only used by the mixer thread */
+	private Sound[] voiceSound = new Sound[Settings.MIX_VOICES];     // null if free
+	private int[] voicePos = new int[Settings.MIX_VOICES];           // Next sample
+	private boolean[] voiceLoop = new boolean[Settings.MIX_VOICES];  // Loops forever
+
+	// Files being read by streamed voices (null for resident sounds)
+	private AudioInputStream[] voiceStream =
+		new AudioInputStream[Settings.MIX_VOICES];
+
+	// Bytes read from a stream for one block; only used by the mixer
+	private byte[] chunk = new byte[Settings.MIX_FRAMES * 4];
+
+	/**
+	 * A registered sound file.
+	 */
+	private static class Sound {
+		String filename;     // Name of the file in `/resources/`
+		boolean streamed;    // Read from the file while it plays
+		short[] data = null; // Samples, left then right, once decoded
+		                     // (resident sounds only; set by mixer)
+
+		Sound(String filename, boolean streamed) {
+			this.filename = filename;
+			this.streamed = streamed;
+		} /* End constructor */
+	} /* End class Sound */
+
+	/**
+	 * A request to start a sound, or to stop every sound.
+	 */
+	private static class Command {
+		Sound sound;    // Sound to start, or null to stop all sounds
+		boolean looped; // Whether the sound loops continuously
+
+		Command(Sound sound, boolean looped) {
+			this.sound = sound;
+			this.looped = looped;
+		} /* End constructor */
+	} /* End class Command */
 
 	/**
 	 * Stores all game-wide sound files.
@@ -33,6 +89,18 @@ public class SoundHandler {
 	 * appropriate String key, and register new keys that may overwrite
 	 * existing keys. Playback is also possible with the `playSound` method.
 	 *
+	 * Every sound is mixed by one thread into a single SourceDataLine, so
+	 * up to Settings.MIX_VOICES sounds, even copies of the same one, can
+	 * play at once without cutting each other off:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/javax/sound/sampled/SourceDataLine.html>
+	 *
+	 * Other threads never wait on the mixer, or on sound files being
+	 * read. They only add commands to a lock-free queue, which the mixer
+	 * reads between each block of sound:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/java/util/concurrent/ConcurrentLinkedQueue.html>
+	 *
 	 * Data protection is achieved through use of getters / setters.
 	 */
 	private SoundHandler() { /* No need to instantiate */ }
@@ -52,69 +120,96 @@ public class SoundHandler {
 	/**
 	 * Register a sound file corresponding to a specific key.
 	 *
-	 * This method uses lines of code from the in-class Sound.java example.
+	 * Nothing is read yet; sounds are decoded by the mixer thread the
+	 * first time they are played, so starting the game does not wait on
+	 * them. Files larger than Settings.STREAM_BYTES, such as themes, are
+	 * never kept in memory. They are read from the file a block at a time
+	 * while they play. Smaller files, such as effects, are decoded whole
+	 * the first time and kept, so they can start again at once.
 	 *
 	 * If a key is already in use, it will be overwritten. Java's
 	 * SoundTechnology only supports .WAV, .AIFF, and .AU files.
 	 *
 	 * <https://docs.oracle.com/javase/8/docs/technotes/guides/sound/index.html>
 	 *
-	 * For other file types, this method WILL RETURN FALSE.
+	 * If the file does not exist, or if there is no audio device, this
+	 * method WILL RETURN FALSE. Other file types stay silent when played.
 	 *
 	 * @param key String to use as key for future access
 	 * @param filename Name of the sound file (in relative path `/resources/`
 	 */
 	public boolean register(String key, String filename) {
-		Clip clip;
+		long size;
 		try {
 			// Get file relative to current classpath
 			URL url = this.getClass().getResource("/resources/" + filename);
+			if (url == null) { return false; } // File does not exist
 
-			// Create sound
-			File sound = new File(url.toURI());
-			/* BEGIN COPIED CODE */
-			AudioInputStream stream = AudioSystem.getAudioInputStream(sound);
-			clip = AudioSystem.getClip();
-			clip.open(stream);
-			/* END COPIED CODE */
-		} catch (Exception e) {
-			return false; // Failed to process sound
-		}
-		// No error; store clip
-		synchronized(this) {
-			this.soundmap.put(key, clip);
+			size = url.openConnection().getContentLengthLong();
+		} catch (IOException e) {
+			return false; // Failed to find sound
 		}
+
+		// No sound can be heard without the mixer
+		if (!this.startMixer()) { return false; }
+
+		// No error; store sound
+		this.soundmap.put(
+			key, new Sound(filename, size > Settings.STREAM_BYTES)
+		);
 		return true; // Success
 	} /* End method register */
 
 
+	/**
+	 * Open the audio line and start the mixer thread, if not yet started.
+	 *
+	 * @return true if the mixer is running, false if there is no audio.
+	 */
+	private synchronized boolean startMixer() {
+		if (this.mixer != null) { return true; } // Already running
+
+		try {
+			// Small buffer of a few blocks, so sounds start quickly
+			this.line = AudioSystem.getSourceDataLine(FORMAT);
+			this.line.open(FORMAT, Settings.MIX_FRAMES * 4 * 4);
+			this.line.start();
+		} catch (Exception e) {
+			this.line = null;
+			return false; // No audio device
+		}
+
+		// Mixer should not keep the game open once the window is closed
+		this.mixer = new Thread(new Runnable() {
+			public void run() {
+				mix();
+			}
+		}, "SoundMixer");
+		this.mixer.setDaemon(true);
+		this.mixer.start();
+		return true;
+	} /* End method startMixer */
+
+
 	/**
 	 * Play selected sound.
 	 *
-	 * This method is synchronized so that the correct sound is made.
-	 * The monitor used is from the SoundHandler class, not the clip,
-	 * because of a thread race condition occuring when two sounds
-	 * of the same key are played at the same time. A lock by clip will
-	 * allow neither of them to play, freezing the game indefinitely.
-	 * A synchronized lock on the SoundHandler will.
+	 * Only sends a command to the mixer thread, so this never waits.
+	 * The sound starts with the next block the mixer writes.
 	 *
 	 * @param key Key of the sound to play.
 	 * @param looped Whether or not sound should loop continuously.
 	 * @return true if successful, else false.
 	 */
 	public boolean playSound(String key, boolean looped) {
-		Clip clip = this.soundmap.get(key); // Get registered clip
-		if (clip == null) { return false; } // No key exists
-
-		synchronized(this) {
-			clip.setFramePosition(0);
-			if (looped) {
-				clip.loop(clip.LOOP_CONTINUOUSLY);
-			} else {
-				clip.start();
-			}
-		}
+		long start = Profiler.start();
+		long bytes = Profiler.allocated();
 
+		Sound sound = this.soundmap.get(key); // Get registered sound
+		if (sound == null) { return false; } // No key exists
+
+		this.commands.add(new Command(sound, looped));
+		Profiler.end(Profiler.Section.SOUND, start, bytes);
 		return true;
 	} /* End method playSound */
 
@@ -123,12 +218,253 @@ public class SoundHandler {
 	 * Stop all currently playing sounds.
 	 */
 	public void stopSounds() {
-		// Get hashmap values as an array
-		for (Clip clip : this.soundmap.values()) {
-			// Stop sounds, reset playback
-			clip.stop();
-			clip.setFramePosition(0);
-		}
+		this.commands.add(new Command(null, false));
 	} /* End method stopSounds */
 
+
+	/**
+	 * Open a sound file, converted to the mixing format.
+	 *
+	 * Java's AudioSystem converts the sample size, rate and channels as
+	 * the file is read:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/javax/sound/sampled/AudioSystem.html>
+	 *
+	 * @param sound sound to open.
+	 * @return stream of the sound, or null if it cannot be read.
+	 */
+	private AudioInputStream open(Sound sound) {
+		try {
+			URL url = this.getClass().getResource("/resources/" + sound.filename);
+			return AudioSystem.getAudioInputStream(
+				FORMAT,
+				AudioSystem.getAudioInputStream(
+					new BufferedInputStream(url.openStream())
+				)
+			);
+		} catch (Exception e) {
+			return null; // Failed to process sound
+		}
+	} /* End method open */
+
+
+	/**
+	 * Decode a whole resident sound, if not decoded yet.
+	 *
+	 * Sounds that cannot be read are kept as silence, so they are not
+	 * read again every time they are played.
+	 */
+	private void decode(Sound sound) {
+		if (sound.data != null) { return; } // Already decoded
+
+		sound.data = new short[0];
+		AudioInputStream stream = this.open(sound);
+		if (stream == null) { return; }
+
+		try {
+			byte[] bytes = stream.readAllBytes();
+			stream.close();
+
+			// Join each pair of little-endian bytes into one sample
+			short[] data = new short[bytes.length / 2];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = (short)((bytes[i * 2] & 0xFF) | (bytes[i * 2 + 1] << 8));
+			}
+			sound.data = data;
+		} catch (IOException e) {
+			return; // Failed to process sound; stays silent
+		}
+	} /* End method decode */
+
+
+	/**
+	 * Mix every playing sound into the audio line, forever.
+	 *
+	 * Samples of all voices are added together, then limited to the
+	 * range of 16-bit samples. Writing to the line waits while its
+	 * buffer is full, which keeps the mixer in time with the sound card.
+	 */
+	private void mix() {
+		int[] sum = new int[Settings.MIX_FRAMES * 2];    // Mixed samples
+		byte[] out = new byte[Settings.MIX_FRAMES * 4];  // Bytes for the line
+
+		while (true) {
+			long start = Profiler.start();
+			long bytes = Profiler.allocated();
+
+			// Start and stop sounds
+			Command cmd = this.commands.poll();
+			while (cmd != null) {
+				this.apply(cmd);
+				cmd = this.commands.poll();
+			}
+
+			Arrays.fill(sum, 0);
+			for (int v = 0; v < Settings.MIX_VOICES; v++) {
+				if (this.voiceSound[v] == null) { continue; } // Free voice
+
+				boolean playing = (this.voiceStream[v] != null)
+					? this.mixStream(v, sum)
+					: this.mixResident(v, sum);
+
+				if (!playing) { this.free(v); }
+			}
+
+			// Limit samples and split into little-endian bytes
+			for (int i = 0; i < sum.length; i++) {
+				int s = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sum[i]));
+				out[i * 2] = (byte)s;
+				out[i * 2 + 1] = (byte)(s >> 8);
+			}
+			Profiler.end(Profiler.Section.MIX, start, bytes);
+
+			this.line.write(out, 0, out.length); // Waits for the line
+		}
+	} /* End method mix */
+
+
+	/**
+	 * Add one block of a resident sound to the mixed samples.
+	 *
+	 * @return true if the sound is still playing, false if finished.
+	 */
+	private boolean mixResident(int v, int[] sum) {
+		short[] data = this.voiceSound[v].data;
+		if (data.length == 0) { return false; } // Nothing to play
+
+		int pos = this.voicePos[v];
+		for (int i = 0; i < sum.length; i++) {
+			if (pos >= data.length) {
+				if (!this.voiceLoop[v]) { break; } // Finished
+				pos = 0; // Back to the start
+			}
+			sum[i] += data[pos++];
+		}
+
+		this.voicePos[v] = pos;
+		return (pos < data.length) || this.voiceLoop[v];
+	} /* End method mixResident */
+
+
+	/**
+	 * Read one block of a streamed sound from its file and add it to the
+	 * mixed samples.
+	 *
+	 * @return true if the sound is still playing, false if finished.
+	 */
+	private boolean mixStream(int v, int[] sum) {
+		int filled = 0; // Bytes of the block read so far
+
+		while (filled < this.chunk.length) {
+			int n;
+			try {
+				n = this.voiceStream[v].read(
+					this.chunk, filled, this.chunk.length - filled
+				);
+			} catch (IOException e) {
+				n = -1; // Treat as end of file
+			}
+
+			if (n > 0) {
+				filled += n;
+				this.voicePos[v] += n / 2;
+				continue;
+			}
+			if (n == 0) { continue; } // Nothing yet; try again
+
+			// End of file; stop unless looped. A file with no sound at
+			// all would loop forever, so it is stopped too.
+			if (!this.voiceLoop[v] || (this.voicePos[v] == 0)) { break; }
+
+			// Start again from the beginning of the file
+			this.close(v);
+			this.voiceStream[v] = this.open(this.voiceSound[v]);
+			this.voicePos[v] = 0;
+			if (this.voiceStream[v] == null) { break; } // Cannot reopen
+		}
+
+		// Join each pair of little-endian bytes into one sample
+		for (int i = 0; i < filled / 2; i++) {
+			sum[i] += (short)((this.chunk[i * 2] & 0xFF) | (this.chunk[i * 2 + 1] << 8));
+		}
+		return filled == this.chunk.length;
+	} /* End method mixStream */
+
+
+	/**
+	 * Carry out one command on the voices.
+	 *
+	 * A new sound takes a free voice. If every voice is busy, it takes
+	 * the place of the resident sound closest to its end that does not
+	 * loop. Music that loops or streams is never cut off.
+	 */
+	private void apply(Command cmd) {
+		if (cmd.sound == null) {
+			// Stop all sounds
+			for (int v = 0; v < Settings.MIX_VOICES; v++) { this.free(v); }
+			return;
+		}
+
+		int best = -1; // Voice to use
+		for (int v = 0; v < Settings.MIX_VOICES; v++) {
+			if (this.voiceSound[v] == null) {
+				best = v; // Free voice
+				break;
+			}
+			if (this.voiceLoop[v] || (this.voiceStream[v] != null)) {
+				continue; // Never cut off music
+			}
+
+			if ((best < 0) || (this.left(v) < this.left(best))) { best = v; }
+		}
+		if (best < 0) { return; } // Every voice is playing music
+
+		// Sound is read the first time it is played
+		AudioInputStream stream = null;
+		if (cmd.sound.streamed) {
+			stream = this.open(cmd.sound);
+			if (stream == null) { return; } // Cannot be read
+		} else {
+			this.decode(cmd.sound);
+		}
+
+		this.free(best);
+		this.voiceSound[best] = cmd.sound;
+		this.voiceStream[best] = stream;
+		this.voicePos[best] = 0;
+		this.voiceLoop[best] = cmd.looped;
+	} /* End method apply */
+
+
+	/**
+	 * Get the number of samples a resident voice has left to play.
+	 */
+	private int left(int v) {
+		return this.voiceSound[v].data.length - this.voicePos[v];
+	} /* End method left */
+
+
+	/**
+	 * Stop a voice, closing its file if it was streamed.
+	 */
+	private void free(int v) {
+		this.close(v);
+		this.voiceSound[v] = null;
+	} /* End method free */
+
+
+	/**
+	 * Close the file of a streamed voice, if it has one.
+	 */
+	private void close(int v) {
+		if (this.voiceStream[v] == null) { return; }
+
+		try {
+			this.voiceStream[v].close();
+		} catch (IOException e) {
+			// Nothing more can be done; the stream is dropped anyway
+		}
+		this.voiceStream[v] = null;
+	} /* End method close */
+
 } /* End class SoundHandler */
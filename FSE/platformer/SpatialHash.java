@@ -0,0 +1,174 @@
+// ------------------------------------------------------------------------- //
+// The SpatialHash class sorts entities into a uniform grid of cells so that //
+// only entities near an area need to be checked against it.                //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  platformer                                                      //
+// Filename: SpatialHash.java                                                //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package platformer;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+
+public class SpatialHash {
+
+	private int rows;    // Number of rows of cells
+	private int cols;    // Number of columns of cells
+	private double size; // Width and height of one cell in pixels
+
+	// Entities of each cell, stored at index (row * cols + col)
+	private ArrayList<ArrayList<Entity>> cells;
+
+	// Largest width or height of any entity added; entities are stored by
+	// their top-left corner, so they can reach this far into other cells.
+	private double reach = 0;
+
+	/**
+	 * Create an empty SpatialHash covering a level.
+	 *
+	 * Every entity is stored in the cell holding the top-left corner of
+	 * its bounding-box. Entities outside of the level are stored in the
+	 * nearest cell on the edge. Finding the entities near an area only
+	 * looks through the cells under that area, rather than every entity
+	 * of the level:
+	 *
+	 * <https://en.wikipedia.org/wiki/Spatial_hashing>
+	 *
+	 * @param width width of the level in pixels.
+	 * @param height height of the level in pixels.
+	 * @param size width and height of one cell in pixels.
+	 */
+	public SpatialHash(double width, double height, double size) {
+		this.size = size;
+		this.cols = Math.max(1, (int)Math.ceil(width / size));
+		this.rows = Math.max(1, (int)Math.ceil(height / size));
+
+		this.cells = new ArrayList<ArrayList<Entity>>(this.rows * this.cols);
+		for (int i = 0; i < this.rows * this.cols; i++) {
+			this.cells.add(new ArrayList<Entity>());
+		}
+	} /* End constructor */
+
+
+	/**
+	 * Add an entity to the cell it is currently in.
+	 *
+	 * @param ent entity to add.
+	 */
+	public void add(Entity ent) {
+		Rectangle2D.Double loc = ent.getBounds();
+		this.reach = Math.max(this.reach, Math.max(loc.width, loc.height));
+
+		ent.cell = this.cellOf(loc);
+		this.cells.get(ent.cell).add(ent);
+	} /* End method add */
+
+
+	/**
+	 * Remove an entity from the SpatialHash.
+	 *
+	 * Does nothing if the entity was never added.
+	 *
+	 * @param ent entity to remove.
+	 */
+	public void remove(Entity ent) {
+		if (ent.cell < 0) { return; }
+
+		this.cells.get(ent.cell).remove(ent);
+		ent.cell = -1;
+	} /* End method remove */
+
+
+	/**
+	 * Move an entity to a new cell after it has moved.
+	 *
+	 * Should be called whenever the entity may have moved. Most steps the
+	 * entity stays within the same cell and nothing needs to be done.
+	 *
+	 * @param ent entity that has moved.
+	 */
+	public void move(Entity ent) {
+		if (ent.cell < 0) { return; } // Not part of this SpatialHash
+
+		int cell = this.cellOf(ent.getBounds());
+		if (cell == ent.cell) { return; } // Still in the same cell
+
+		this.cells.get(ent.cell).remove(ent);
+		this.cells.get(cell).add(ent);
+		ent.cell = cell;
+	} /* End method move */
+
+
+	/**
+	 * Find all entities whose bounding-boxes intersect an area.
+	 *
+	 * Found entities are added to `out`, which is cleared first. Reusing
+	 * the same list every step means no new objects are created.
+	 *
+	 * @param area area to search.
+	 * @param out list to store found entities in.
+	 */
+	public void query(Rectangle2D area, ArrayList<Entity> out) {
+		out.clear();
+
+		// Entities in cells up and to the left may still reach the area
+		int colMin = this.clampCol(area.getMinX() - this.reach);
+		int colMax = this.clampCol(area.getMaxX());
+		int rowMin = this.clampRow(area.getMinY() - this.reach);
+		int rowMax = this.clampRow(area.getMaxY());
+
+		for (int row = rowMin; row <= rowMax; row++) {
+			for (int col = colMin; col <= colMax; col++) {
+				ArrayList<Entity> cell = this.cells.get(row * this.cols + col);
+
+				for (int i = 0; i < cell.size(); i++) {
+					Entity ent = cell.get(i);
+					if (ent.getBounds().intersects(area)) { out.add(ent); }
+				}
+			}
+		}
+	} /* End method query */
+
+
+	/**
+	 * Remove every entity from the SpatialHash.
+	 */
+	public void clear() {
+		for (ArrayList<Entity> cell : this.cells) {
+			for (Entity ent : cell) { ent.cell = -1; }
+			cell.clear();
+		}
+		this.reach = 0;
+	} /* End method clear */
+
+
+	/**
+	 * Find the cell holding the top-left corner of a bounding-box.
+	 */
+	private int cellOf(Rectangle2D.Double loc) {
+		return this.clampRow(loc.y) * this.cols + this.clampCol(loc.x);
+	} /* End method cellOf */
+
+
+	/**
+	 * Find the column of cells of an x position, limited to the grid.
+	 */
+	private int clampCol(double x) {
+		return Math.max(0, Math.min(this.cols - 1, (int)Math.floor(x / this.size)));
+	} /* End method clampCol */
+
+
+	/**
+	 * Find the row of cells of a y position, limited to the grid.
+	 */
+	private int clampRow(double y) {
+		return Math.max(0, Math.min(this.rows - 1, (int)Math.floor(y / this.size)));
+	} /* End method clampRow */
+
+} /* End class SpatialHash */
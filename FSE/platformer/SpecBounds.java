@@ -15,6 +15,8 @@ package platformer;
 
 import java.util.ArrayList;
 import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
 import java.awt.geom.Rectangle2D;
 
 public class SpecBounds {
@@ -33,6 +35,21 @@ public class SpecBounds {
 	} /* End constructor */
 
 
+	/**
+	 * Copy the collision boxes of another SpecBounds.
+	 *
+	 * Boxes themselves are shared; only the list of them is copied, so
+	 * removing a box from one SpecBounds does not remove it from the other.
+	 *
+	 * @param other SpecBounds to copy.
+	 */
+	public SpecBounds(SpecBounds other) {
+		synchronized(other.bounds) {
+			bounds = new ArrayList<Shape>(other.bounds);
+		}
+	} /* End constructor */
+
+
 	/**
 	 * Check if shape intersects with any collision boxes stored.
 	 *
@@ -116,6 +133,47 @@ public class SpecBounds {
 	} /* End method add */
 
 
+	/**
+	 * Add every shape bounding box of another SpecBounds.
+	 *
+	 * @param other SpecBounds to add the boxes of.
+	 */
+	public void addAll(SpecBounds other) {
+		synchronized(bounds) {
+			synchronized(other.bounds) {
+				bounds.addAll(other.bounds);
+			}
+		}
+	} /* End method addAll */
+
+
+	/**
+	 * Move every shape bounding box sideways, such as when an endless level
+	 * is shifted (see Level.shift).
+	 *
+	 * Boxes are moved as copies, as they may be shared with copies of the
+	 * level. Boxes moved wholly left of the level are removed.
+	 *
+	 * @param dx pixels to move right (negative for left).
+	 */
+	public void shift(double dx) {
+		AffineTransform move = AffineTransform.getTranslateInstance(dx, 0);
+
+		synchronized(bounds) {
+			for (int i = bounds.size() - 1; i >= 0; i--) {
+				Area box = new Area(bounds.get(i));
+				box.transform(move);
+
+				if (box.getBounds2D().getMaxX() <= 0) {
+					bounds.remove(i); // Left the level
+				} else {
+					bounds.set(i, box);
+				}
+			}
+		}
+	} /* End method shift */
+
+
 	/**
 	 * Remove a shape bounding box at a specific index.
 	 *
@@ -13,17 +13,36 @@
 
 package platformer;
 
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
 import javax.imageio.*;
 import java.net.URL;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.awt.geom.Area;
 import java.awt.geom.Rectangle2D;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SpriteHandler {
 
+	// Decoded images by path, so each file is only read once
+	private static final ConcurrentHashMap<String, BufferedImage> decoded =
+		new ConcurrentHashMap<String, BufferedImage>();
+
+	// Finished SpriteHandlers by path, tile layout and zoom, shared by
+	// everything that loads the same sheet at the same zoom
+	private static final ConcurrentHashMap<String, SpriteHandler> atlases =
+		new ConcurrentHashMap<String, SpriteHandler>();
+
+	// SHA-256 hashes of the contents of loaded files, by path
+	private static final ConcurrentHashMap<String, String> digests =
+		new ConcurrentHashMap<String, String>();
+
 	private BufferedImage sheet;    // Store BufferedImage rep. of spritesheet
-	private BufferedImage reversed; // Horizontally flipped spritesheet
 	private int tileX;              // Width of one tile
 	private int tileY;              // Height of one tile
 	private int xOffset;            // Padding between tiles (X axis)
@@ -35,6 +54,17 @@ public class SpriteHandler {
 	private Rectangle2D.Double[][] tileBounds; // Collision-boxes of each tile
 	private double zoom; // Zoom setting of spritesheet
 
+	// Every tile of the sheet, cut out once. Index of a tile is
+	// (row * cols + col) * 2, plus one for the horizontally flipped tile.
+	private BufferedImage[] frames;
+
+	// Exact shapes of tiles, made the first time each one is needed
+	private Area[] shapes;
+
+	// Key of the tile geometry in the GeometryCache; null if the sheet
+	// was not loaded from a file, and its geometry is not cached
+	private String key = null;
+
 	/**
 	 * Create a handler managing the tiles of a spritesheet.
 	 *
@@ -43,8 +73,9 @@ public class SpriteHandler {
 	 * requested by data classes (Level, Player, Entity).
 	 *
 	 * This method is efficient; multiple entities of the same type are
-	 * rendered using the same BufferedImage; multiple tiles from a single
-	 * SpriteHandler share the same base array as storage.
+	 * rendered using the same BufferedImage. Every tile, and its flipped
+	 * version, is cut out of the sheet once when the SpriteHandler is
+	 * created, so getting a tile does not create any new objects.
 	 *
 	 * SpriteHandlers are most often created with the static createFromFile
 	 * method, which also takes care of loading the initial file.
@@ -62,6 +93,24 @@ public class SpriteHandler {
 		BufferedImage sheet, int tileX, int tileY, int xOffset,
 		int yOffset, double zoom, boolean raw
 	) {
+		this(sheet, tileX, tileY, xOffset, yOffset, zoom, raw, null);
+	} /* End constructor */
+
+
+	/**
+	 * Create a handler whose tile geometry is kept in the GeometryCache.
+	 *
+	 * If the geometry of the sheet was saved by an earlier launch, it is
+	 * loaded instead of looking at the pixels of every tile. Otherwise it
+	 * is worked out, every shape included, and saved for next time.
+	 *
+	 * @param key key of the sheet's geometry, or null to not cache it.
+	 */
+	private SpriteHandler(
+		BufferedImage sheet, int tileX, int tileY, int xOffset,
+		int yOffset, double zoom, boolean raw, String key
+	) {
+		this.key = key;
 		this.sheet = sheet;    // Set fields based on parameters
 		this.zoom = zoom;
 		this.tileX = tileX;
@@ -94,18 +143,99 @@ public class SpriteHandler {
 			);
 		}
 
-		// Flip the sheet for reversed tiles (costumes in other direction)
-		// For example, player facing left would be reverse of facing right
-		this.reversed = Utilities.horizontalFlip(
-			// Copy sheet as input so original is not modified
-			Utilities.copy(this.sheet)
-		);
+		// Cut out all tiles, and flipped tiles for costumes in the other
+		// direction. For example, player facing left would be reverse of
+		// facing right.
+		this.createFrames();
+
+		if ((key != null)
+			&& GeometryCache.loadSheet(key, this.tileBounds, this.shapes)
+		) {
+			return; // Geometry loaded from an earlier launch
+		}
 
 		// Create shrunken rectangular boundaries for all tiles in sheet
 		createExactBoundaries(rows, cols);
+
+		if (key != null) {
+			// Work out every shape now, so all of them are saved
+			for (int row = 0; row < rows; row++) {
+				for (int col = 0; col < cols; col++) { this.getShape(col, row); }
+			}
+			GeometryCache.saveSheet(key, this.tileBounds, this.shapes);
+		}
 	} /* End constructor */
 
 
+	/**
+	 * Cut out every tile of the sheet, normal and flipped.
+	 *
+	 * When a screen is available, tiles are copied into images made for
+	 * that screen, which Java can keep in video memory and draw faster:
+	 *
+	 * <https://docs.oracle.com/javase/8/docs/api/java/awt/GraphicsConfiguration.html>
+	 */
+	private void createFrames() {
+		// Dimensions of one tile (zoom of sheet is applied)
+		int width  = this.getXSize();
+		int height = this.getYSize();
+
+		// Configuration of screen, if there is one
+		GraphicsConfiguration gc = null;
+		if (!GraphicsEnvironment.isHeadless()) {
+			gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+				.getDefaultScreenDevice().getDefaultConfiguration();
+		}
+
+		this.frames = new BufferedImage[this.rows * this.cols * 2];
+		this.shapes = new Area[this.rows * this.cols];
+
+		for (int row = 0; row < this.rows; row++) {
+			for (int col = 0; col < this.cols; col++) {
+				// Calculate X and Y position of origin of tile
+				// X is equal to width of one column * columns
+				// Y is equal to height of one row * rows
+				// Zoom factor of level, not global Settings, is applied
+				int xPos = (int)(((tileX + xOffset) * col) * this.zoom);
+				int yPos = (int)(((tileY + yOffset) * row) * this.zoom);
+
+				// Last tiles may be cut off at edge of sheet
+				int w = Math.min(width, this.sheet.getWidth() - xPos);
+				int h = Math.min(height, this.sheet.getHeight() - yPos);
+
+				int index = (row * this.cols + col) * 2;
+				for (int flip = 0; flip < 2; flip++) {
+					BufferedImage frame = (gc != null)
+						? gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT)
+						: new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+
+					Graphics2D g2d = frame.createGraphics();
+					if (flip == 0) {
+						g2d.drawImage(
+							this.sheet,
+							0, 0, w, h,                     // Frame
+							xPos, yPos, xPos + w, yPos + h, // Sheet
+							null
+						);
+					} else {
+						// Map each corner of the tile to the opposite
+						// corner to perform "flip"
+						g2d.drawImage(
+							this.sheet,
+							0, 0, w, h,                     // Frame
+							xPos + w, yPos, xPos, yPos + h, // Sheet
+							null
+						);
+					}
+					g2d.dispose();
+
+					this.frames[index + flip] = frame;
+				}
+			}
+		}
+	} /* End method createFrames */
+
+
 	/**
 	 * Create shrunken rectangular boundaries for all tiles in sheet.
 	 */
@@ -137,6 +267,14 @@ public class SpriteHandler {
 	 *
 	 * Opens files relative to the `caller` parameter's classpath.
 	 *
+	 * Decoding, scaling and cutting out a sheet is slow, so finished
+	 * SpriteHandlers are kept for the whole program and returned again
+	 * when the same sheet is asked for at the same zoom. A SpriteHandler
+	 * is never changed once created, so sharing one is safe. Decoded
+	 * images are also kept, so other zooms of a sheet do not read the file
+	 * again. Bounds and shapes of tiles are saved to disk by the
+	 * GeometryCache, so later launches do not look at their pixels.
+	 *
 	 * @param caller class calling this method.
 	 * @param relPath relative path to caller.
 	 * @param tileX width of one tile.
@@ -152,21 +290,47 @@ public class SpriteHandler {
 		Object caller, String relPath, int tileX, int tileY,
 		int xOffset, int yOffset, double zoom, boolean raw
 	) {
-		BufferedImage img = null;
-		URL url = caller.getClass().getResource(relPath);
+		String key = relPath + "/" + tileX + "x" + tileY + "/" + xOffset + "x"
+			+ yOffset + "/" + zoom + (raw ? "/raw" : "");
+
+		SpriteHandler ret = atlases.get(key);
+		if (ret != null) { return ret; } // Already loaded
+
+		BufferedImage img = decoded.get(relPath);
+		if (img == null) {
+			URL url = caller.getClass().getResource(relPath);
 
-		// File does not exist; return null
-		if (url == null) { return null; }
+			// File does not exist; return null
+			if (url == null) { return null; }
 
-		try {
-			img = ImageIO.read(url); // Try to read image
-		} catch (IOException e) {
-			return null; // Read of image failed; return null
+			byte[] data;
+			try (InputStream in = url.openStream()) {
+				data = in.readAllBytes(); // Try to read file
+				img = ImageIO.read(new ByteArrayInputStream(data));
+			} catch (IOException e) {
+				return null; // Read of image failed; return null
+			}
+			if (img == null) { return null; } // Not an image
+			digests.putIfAbsent(relPath, GeometryCache.digest(data));
+			decoded.putIfAbsent(relPath, img);
 		}
+
+		// Geometry depends on the contents of the file and how it is cut
+		// up and scaled
+		String geoKey = GeometryCache.key(
+			digests.get(relPath), tileX, tileY, xOffset, yOffset, zoom, raw
+		);
+
 		// Create SpriteHandler from loaded BufferedImage and params.
-		return new SpriteHandler(
-			img, tileX, tileY, xOffset, yOffset, zoom, raw
+		// The sheet is never drawn on, so the decoded image can be shared.
+		ret = new SpriteHandler(
+			img, tileX, tileY, xOffset, yOffset, zoom, raw, geoKey
 		);
+
+		// Another thread may have loaded the same sheet in the meantime;
+		// keep whichever was stored first
+		SpriteHandler prev = atlases.putIfAbsent(key, ret);
+		return (prev != null) ? prev : ret;
 	} /* End static method createFromFile */
 
 
@@ -206,35 +370,14 @@ public class SpriteHandler {
 	public BufferedImage getTile(int gridX, int gridY, boolean reversed)
 		throws IllegalArgumentException
 	{
-		if ((gridX < 0 || gridX > this.cols) || (gridY < 0 || gridY > this.rows)) {
+		if ((gridX < 0 || gridX >= this.cols) || (gridY < 0 || gridY >= this.rows)) {
 			throw new IllegalArgumentException(
-				"SpriteHandler.getTile -> Inputs cannot be negative."
+				"SpriteHandler.getTile -> Tile is not within spritesheet."
 			);
 		}
 
-		// Calculate X and Y position of origin of tile to extract
-		// X is equal to width of one column * columns
-		// Y is equal to height of one row * rows
-		// Zoom factor of level, not global Settings, is applied
-		int xPos   = (int)(( (tileX + xOffset) * gridX ) * this.zoom);
-		int yPos   = (int)(( (tileY + yOffset) * gridY ) * this.zoom);
-
-		// Calculate tile dimensions in same way as width and height
-		int width  = (int)(this.tileX * this.zoom);
-		int height = (int)(this.tileY * this.zoom);
-
-		if (reversed) {
-			// Image is reversed so get from reversed sheet.
-			// Start from end (WIDTH) instead of 0 because sheet
-			// is reversed
-			return this.reversed.getSubimage(
-				this.reversed.getWidth() - xPos - width,
-				this.reversed.getHeight() - yPos - height,
-				width, height
-			);
-		}
-		// Image is not reversed; get from normal sheet
-		return this.sheet.getSubimage(xPos, yPos, width, height);
+		// Tiles are already cut out; just look it up
+		return this.frames[(gridY * this.cols + gridX) * 2 + (reversed ? 1 : 0)];
 	} /* End method getTile */
 
 
@@ -258,6 +401,33 @@ public class SpriteHandler {
 	public int getYSize() { return (int)(this.tileY * this.zoom); }
 
 
+	/**
+	 * Get the exact area of a tile with transparent pixels removed,
+	 * relative to the top-left corner of the tile.
+	 *
+	 * Each shape is only worked out once, then shared by every tile of
+	 * the same type in a level. The returned Area must not be modified.
+	 *
+	 * Safe to call from several threads at once, as levels are built by
+	 * several threads.
+	 *
+	 * @param x Grid x position of tile.
+	 * @param y Grid y position of tile.
+	 */
+	public Area getShape(int x, int y) {
+		int index = y * this.cols + x;
+
+		synchronized (this.shapes) {
+			if (this.shapes[index] == null) {
+				this.shapes[index] = Utilities.exactBounds(
+					this.getTile(x, y), 0, 0
+				);
+			}
+			return this.shapes[index];
+		}
+	} /* End method getShape */
+
+
 	/**
 	 * Get Rectangular area boundary for a particular tile (with transparent
 	 * pixels removed).
@@ -267,4 +437,12 @@ public class SpriteHandler {
 	 */
 	public Rectangle2D.Double getBounds(int x, int y) { return tileBounds[y][x]; }
 
+
+	/**
+	 * Get the key of the tile geometry in the GeometryCache.
+	 *
+	 * @return key, or null if the geometry is not cached.
+	 */
+	public String getKey() { return this.key; }
+
 } /* End class SpriteHandler */
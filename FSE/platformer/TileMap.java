@@ -13,42 +13,55 @@
 package platformer;
 
 import java.util.Collections;
-import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Set;
 import java.awt.image.BufferedImage;
 
 public class TileMap {
 
+	// One shared TileMap for every biome and level character (0-127);
+	// see fromChar.
+	private static final TileMap[][] TABLE = createTable();
+
 	/* Tile location */
 	private int gridX; // Grid position (x or y). NOT real pixel position.
 	private int gridY;
 
-	// Each tile has a list of attributes on how it affects the player
-	private ArrayList<Attribute> attrs = new ArrayList<Attribute>();
+	// Character of the tile in level files
+	private byte code = 0;
+
+	// Each tile has a set of attributes on how it affects the player
+	private Set<Attribute> attrs;
 
 	// A tile may represent the starting location of an entity
 	private EntityType entityType = EntityType.NONE;
 
 	/**
 	 * Create tile representing location in levelmap with attributes.
+	 *
+	 * TileMaps never change after they are created; only one is made for
+	 * each character of each biome, and it is shared by every tile of
+	 * that character.
 	 */
-	TileMap(int gridX, int gridY, Attribute... attrs) {
+	private TileMap(int gridX, int gridY, Attribute... attrs) {
 		this.gridX = gridX;
 		this.gridY = gridY;
 
+		// EnumSets store attributes as bits, so checking for an
+		// attribute does not search through a list.
+		EnumSet<Attribute> set = EnumSet.noneOf(Attribute.class);
 		if (attrs != null) {
-			// Add all of array into ArrayList
-			Collections.addAll(this.attrs, attrs);
+			// Add all of array into set
+			Collections.addAll(set, attrs);
 		}
+		this.attrs = Collections.unmodifiableSet(set);
 	} /* End constructor */
 
 
 	/**
 	 * Create empty tile.
-	 * 
-	 * @param gridX column position of tile.
-	 * @param gridY row position of tile.
 	 */
-	TileMap() { this(0, 0, Attribute.EMPTY); }
+	private TileMap() { this(0, 0, Attribute.EMPTY); }
 
 
 	/**
@@ -56,12 +69,31 @@ public class TileMap {
 	 * 
 	 * @param type type of Entity.
 	 */
-	TileMap(EntityType type) {
+	private TileMap(EntityType type) {
 		this();
 		this.entityType = type;
 	} /* End constructor */
 
 
+	/**
+	 * Create the shared TileMaps of every biome and character.
+	 *
+	 * @return table of TileMaps, stored as [biome][character].
+	 */
+	private static TileMap[][] createTable() {
+		TileMap[][] table = new TileMap[Biome.values().length][128];
+
+		for (Biome biome : Biome.values()) {
+			for (int c = 0; c < 128; c++) {
+				TileMap tile = create(biome, c);
+				tile.code = (byte)c;
+				table[biome.ordinal()][c] = tile;
+			}
+		}
+		return table;
+	} /* End static method createTable */
+
+
 	/**
 	 * Get the image of the tile this TileMap represents from sheet.
 	 *
@@ -74,7 +106,7 @@ public class TileMap {
 	 */
 	public BufferedImage getTile(SpriteHandler sheet) {
 		// If the tile does not represent a tile
-		if (this.attrs.contains(Attribute.EMPTY)) { return null; }
+		if (this.has(Attribute.EMPTY)) { return null; }
 
 		try {
 			return sheet.getTile(this.gridX, this.gridY);
@@ -96,6 +128,12 @@ public class TileMap {
 	public int getY() { return this.gridY; }
 
 
+	/**
+	 * Get the character of the tile in level files (0-127).
+	 */
+	public byte getCode() { return this.code; }
+
+
 	/**
 	 * Get entity type of TileMap.
 	 *
@@ -107,17 +145,26 @@ public class TileMap {
 	/**
 	 * Get tile attributes of TileMap.
 	 *
-	 * @return Attributes as ArrayList
+	 * @return Attributes as a set that cannot be changed.
 	 */
-	public ArrayList<Attribute> getAttributes() {
+	public Set<Attribute> getAttributes() {
 		return this.attrs;
 	} /* End method getAttributes */
 
 
 	/**
-	 * Create a TileMap from a character.
+	 * Check if the tile has an attribute.
 	 *
-	 * This is used to load levels from text files.
+	 * @param attr attribute to check for.
+	 */
+	public boolean has(Attribute attr) { return this.attrs.contains(attr); }
+
+
+	/**
+	 * Get the shared TileMap of a character.
+	 *
+	 * This is used to load levels from files. Every call with the same
+	 * biome and character returns the same TileMap.
 	 * 
 	 * @param biome Biome of the level to use.
 	 * @param c Character.
@@ -125,6 +172,22 @@ public class TileMap {
 	 *         for no tile / air in that position.
 	 */
 	public static TileMap fromChar(Biome biome, int c) {
+		if ((c < 0) || (c >= 128)) { c = ' '; } // Not a level character; air
+		return TABLE[biome.ordinal()][c];
+	} /* End static method fromChar */
+
+
+	/**
+	 * Create a new TileMap from a character.
+	 *
+	 * Only used to fill the shared table of TileMaps.
+	 * 
+	 * @param biome Biome of the level to use.
+	 * @param c Character.
+	 * @return TileMap of resulting tile or TileMap with EMPTY attribute
+	 *         for no tile / air in that position.
+	 */
+	private static TileMap create(Biome biome, int c) {
 		switch (c) {
 		/* ENTITIES */
 			case 'P': // Player
@@ -243,6 +306,6 @@ public class TileMap {
 			default: // AIR
 				return new TileMap();
 			}
-	} /* End method fromChar */
+	} /* End static method create */
 
 } /* End class TileMap */
@@ -42,16 +42,13 @@ public class Utilities {
 	 * This method is much better than a rectangular bounding box for objects
 	 * that are not rectangular or square.
 	 *
-	 * Iteration of a BufferedImage pixel by pixel was adapted (and
-	 * considerably simplified) from an answer here:
+	 * The outermost ring of pixels of the image is skipped, as tiles are
+	 * drawn slightly smaller than their spot in the level.
 	 *
-	 * <https://stackoverflow.com/a/19486347>.
+	 * Pixels are read all at once as ARGB whole numbers instead of one
+	 * Color at a time:
 	 *
-	 * Code to detect transparent pixels and create a single unified area
-	 * from each pixel was by me through reading the docs below:
-	 *
-	 * <https://docs.oracle.com/javase/8/docs/api/java/awt/image/BufferedImage.html#getRGB-int-int->
-	 * <https://docs.oracle.com/javase/8/docs/api/java/awt/Color.html#getAlpha-->
+	 * <https://docs.oracle.com/javase/8/docs/api/java/awt/image/BufferedImage.html#getRGB-int-int-int-int-int:A-int-int->
 	 *
 	 * Quote:
 	 *
@@ -59,44 +56,95 @@ public class Utilities {
 	 * > opaque and an alpha value of 0 or 0.0 means that the color is
 	 * > completely transparent. When constructing a Color with an explicit
 	 * > alpha or getting the color/alpha components of a Color, the color
-	 * > components are never premultiplied by the alpha component. 
+	 * > components are never premultiplied by the alpha component.
 	 *
-	 * Although this method has a large computation time penalty, it is only
-	 * done once for every object in the level and enables fast collision
-	 * checking.
+	 * Instead of adding one Area per pixel, side-by-side pixels that are
+	 * not transparent are joined into a "run", and runs with the same
+	 * start and end on the rows below are joined into one rectangle.
+	 * All rectangles are then turned into a single Area at once, so a
+	 * slope takes one Area addition rather than one per pixel.
 	 *
 	 * @param bi BufferedImage to process
 	 * @param xOffset x position of the final area
 	 * @param yOffset y position of the final area
 	 */
 	public static Area exactBounds(BufferedImage bi, int xOffset, int yOffset) {
-		Area ret = new Area(); // Area to store final bounds.
-		Color color;  // Color object to determin transparency.
-
-		// Iterate over all pixels (x then y)
-		for (int y = 1; y < bi.getHeight()-1; y++) {
-			for (int x = 1; x < bi.getWidth()-1; x++) {
-				// Get color from BufferedImage pixel getRGB
-				// True; include alpha value
-				color = new Color(bi.getRGB(x, y), true);
-
-				// Check alpha code
-				if (color.getAlpha() != 0) {
-					// Not transparent, add to bounds
-					ret.add(new Area(
-						new Rectangle2D.Double(
-							xOffset + x,
-							yOffset + y,
-							1, 1
-						)
-					));
+		int w = bi.getWidth();
+		int h = bi.getHeight();
+		int[] argb = pixels(bi); // All pixels, row by row
+
+		Path2D.Double path = new Path2D.Double(); // All rectangles
+		boolean[] done = new boolean[w * h]; // Pixels already in a rectangle
+
+		// Iterate over all pixels (x then y), skipping the border
+		for (int y = 1; y < h - 1; y++) {
+			int x = 1;
+			while (x < w - 1) {
+				// Find start of next run not already used
+				if ((argb[y * w + x] >>> 24 == 0) || done[y * w + x]) {
+					x++;
+					continue;
 				}
+				int start = x;
+				while ((x < w - 1) && (argb[y * w + x] >>> 24 != 0)) { x++; }
+				int end = x; // Run is [start, end)
+
+				// Grow rectangle downwards while rows have the same run
+				int bottom = y + 1;
+				while ((bottom < h - 1) && sameRun(argb, w, bottom, start, end)) {
+					for (int i = start; i < end; i++) { done[bottom * w + i] = true; }
+					bottom++;
+				}
+
+				path.append(new Rectangle2D.Double(
+					xOffset + start, yOffset + y, end - start, bottom - y
+				), false);
 			}
 		}
-		return ret; // Return final area
+		return new Area(path); // Return final area
 	} /* End method exactBounds */
 
 
+	/**
+	 * Check if a row has a run of non-transparent pixels from exactly
+	 * `start` up to `end` (not including `end`).
+	 */
+	private static boolean sameRun(
+		int[] argb, int w, int y, int start, int end
+	) {
+		// Run must not continue past either end
+		if ((argb[y * w + start - 1] >>> 24 != 0) && (start > 1)) { return false; }
+		if ((argb[y * w + end] >>> 24 != 0) && (end < w - 1)) { return false; }
+
+		for (int x = start; x < end; x++) {
+			if (argb[y * w + x] >>> 24 == 0) { return false; }
+		}
+		return true;
+	} /* End method sameRun */
+
+
+	/**
+	 * Read all pixels of an image as ARGB whole numbers, row by row.
+	 *
+	 * Images of type TYPE_INT_ARGB that are not part of a larger image
+	 * already store their pixels this way, so their array is used as is.
+	 */
+	private static int[] pixels(BufferedImage bi) {
+		int w = bi.getWidth();
+		int h = bi.getHeight();
+
+		if (
+			(bi.getType() == BufferedImage.TYPE_INT_ARGB)
+			&& (bi.getRaster().getParent() == null)
+			&& (bi.getRaster().getDataBuffer() instanceof DataBufferInt)
+		) {
+			int[] data = ((DataBufferInt)bi.getRaster().getDataBuffer()).getData();
+			if (data.length == w * h) { return data; }
+		}
+		return bi.getRGB(0, 0, w, h, null, 0, w);
+	} /* End method pixels */
+
+
 	/**
 	 * Same as exactBounds, but returns a Rectangle2D bounding box
 	 * instead of an exact Area.
@@ -104,13 +152,39 @@ public class Utilities {
 	 * An area is stationary, so it cannot be used with entities.
 	 * Thus, a rectangle bounding box that is smaller than the original
 	 * approximates a smaller boundary.
+	 *
+	 * Only the smallest and largest positions of pixels that are not
+	 * transparent are needed, so no Area is made.
 	 */
 	public static Rectangle2D.Double exactRectBounds(
 		BufferedImage bi, int xOffset, int yOffset
 	) {
-		return (Rectangle2D.Double) exactBounds(
-			bi, xOffset, yOffset
-		).getBounds2D();
+		int w = bi.getWidth();
+		int h = bi.getHeight();
+		int[] argb = pixels(bi); // All pixels, row by row
+
+		// Smallest and largest positions of visible pixels
+		int minX = w, minY = h, maxX = -1, maxY = -1;
+
+		// Iterate over all pixels (x then y), skipping the border
+		for (int y = 1; y < h - 1; y++) {
+			for (int x = 1; x < w - 1; x++) {
+				if (argb[y * w + x] >>> 24 == 0) { continue; } // Transparent
+
+				minX = Math.min(minX, x);
+				maxX = Math.max(maxX, x);
+				minY = Math.min(minY, y);
+				maxY = Math.max(maxY, y);
+			}
+		}
+
+		// Fully transparent; same as bounds of an empty Area
+		if (maxX < 0) { return new Rectangle2D.Double(); }
+
+		return new Rectangle2D.Double(
+			xOffset + minX, yOffset + minY,
+			maxX - minX + 1, maxY - minY + 1
+		);
 	} /* End method exactRectBounds */
 
 
@@ -164,22 +238,24 @@ public class Utilities {
 	 * If the display ratio of the two ratios is different, the resulting
 	 * image will look shrunk / stretched.
 	 *
-	 * The code for this method was taken from this StackOverflow answer
-	 * with minor variable name modifications and the addition of
-	 * img.getType() instead of assuming a type of A_RGB.
+	 * Based on this StackOverflow answer, with the addition of
+	 * img.getType() instead of assuming a type of A_RGB:
 	 *
 	 * <https://stackoverflow.com/a/9417836>
 	 *
+	 * Images are drawn at the new size with bilinear interpolation.
+	 * Shrinking to less than half the size at once would skip pixels, so
+	 * images are halved in steps until they are small enough, as
+	 * described by Chris Campbell (no code was directly taken):
+	 *
+	 * <https://community.oracle.com/hub/blog/2007/04/03/the-perils-of-imagegetscaledinstance>
+	 *
 	 * @param img image to resize
 	 * @param w width of resized image
 	 * @param h height of resized image
 	 * @return resized BufferedImage.
 	 */
 	public static BufferedImage resize(BufferedImage img, int w, int h) {
-		// Create a new temporary image of input img scaled to the correct
-		// width and height
-		Image tmp = img.getScaledInstance(w, h, Image.SCALE_SMOOTH);
-
 		// Sometimes PNG files will have an invalid type of 0.
 		// In that case modify the type to a default type to process
 		int type = img.getType();
@@ -187,13 +263,28 @@ public class Utilities {
 			type = BufferedImage.TYPE_INT_ARGB;
 		}
 
-		// Create a new BufferedImage to store this scaled image
-		BufferedImage ret = new BufferedImage(w, h, type);
+		BufferedImage ret = img;
+		int currW = img.getWidth();  // Width of current step
+		int currH = img.getHeight(); // Height of current step
 
-		// Transfer temporary image to new BufferedImage
-		Graphics2D g2d = ret.createGraphics();
-		g2d.drawImage(tmp, 0, 0, null);
-		g2d.dispose();
+		do {
+			// Shrink by at most half each step; grow all at once
+			currW = (currW > w) ? Math.max(w, currW / 2) : w;
+			currH = (currH > h) ? Math.max(h, currH / 2) : h;
+
+			// Create a new BufferedImage to store this step
+			BufferedImage step = new BufferedImage(currW, currH, type);
+
+			Graphics2D g2d = step.createGraphics();
+			g2d.setRenderingHint(
+				RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR
+			);
+			g2d.drawImage(ret, 0, 0, currW, currH, null);
+			g2d.dispose();
+
+			ret = step;
+		} while ((currW != w) || (currH != h));
 
 		return ret;
 	} /* End method resize */
@@ -0,0 +1,214 @@
+// ------------------------------------------------------------------------- //
+// The WorldStream class builds the chunks of an endless level in the        //
+// background, ahead of the player.                                          //
+//                                                                           //
+// All methods are by author unless otherwise stated in method header.       //
+//                                                                           //
+// Package:  platformer                                                      //
+// Filename: WorldStream.java                                                //
+// Author:   Leo Qi                                                          //
+// Class:    ICS4U St. Denis                                                 //
+// Date due: Jan. 30, 2022.                                                  //
+// ------------------------------------------------------------------------- //
+
+package platformer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+public class WorldStream {
+
+	private LevelGenerator gen;          // Makes the tiles of each chunk
+	private Biome biome;                 // Biome of the level
+	private SpriteHandler tiles;         // Tile images, for tile shapes
+	private SpriteHandler[] costumes;    // Costumes of entities
+	private double zoom;                 // Zoom of the level
+	private int next = 0;                // Number of next chunk to build
+
+	// Chunks being built or ready, in order; Settings.STREAM_QUEUE of them
+	private ArrayDeque<Future<Level>> pending = new ArrayDeque<Future<Level>>();
+
+	// Only thread that builds chunks
+	private ExecutorService worker;
+
+	/**
+	 * Create a stream of the chunks of an endless level.
+	 *
+	 * An endless level cannot be loaded all at once, so only a window of
+	 * Settings.STREAM_CHUNKS chunks is kept, from `createLevel`. Chunks
+	 * after it are made by the LevelGenerator and built into small levels
+	 * of their own in a background thread, Settings.STREAM_QUEUE chunks
+	 * ahead, so that all the work of loading a chunk is done by the time
+	 * the player needs it. The Simulation takes them with `poll` and
+	 * shifts them into the window (see Level.shift).
+	 *
+	 * Only a fixed number of chunks are ever loaded, so the memory used
+	 * stays the same however far the player goes.
+	 *
+	 * @param seed seed of the level.
+	 * @param biome biome of the level.
+	 * @param tiles SpriteHandler holding tile images.
+	 * @param costumes SpriteHandler[] array for all entity costumes.
+	 * @param zoom zoom of the level.
+	 */
+	public WorldStream(
+		long seed, Biome biome, SpriteHandler tiles, SpriteHandler[] costumes,
+		double zoom
+	) {
+		this.gen = new LevelGenerator(seed, biome, Settings.GEN_ROWS);
+		this.biome = biome;
+		this.tiles = tiles;
+		this.costumes = costumes;
+		this.zoom = zoom;
+
+		// Background thread should not keep the game open once the
+		// window is closed
+		this.worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "WorldStream");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	} /* End constructor */
+
+
+	/**
+	 * Build the first window of the level, and start building the chunks
+	 * after it.
+	 *
+	 * Waits for the window to be built, so should not be called from the
+	 * Swing thread.
+	 *
+	 * @return level of the first Settings.STREAM_CHUNKS chunks, or null if
+	 *         it failed to load.
+	 */
+	public Level createLevel() {
+		int chunks = Settings.STREAM_CHUNKS;
+		byte[] codes = this.generate(0, chunks);
+		this.next = chunks;
+
+		Level lvl = new Level(this.tiles, this.costumes, this.zoom);
+		if (!lvl.loadCodes(
+			this.biome, Settings.GEN_ROWS, chunks * Settings.GEN_CHUNK, codes
+		)) {
+			return null;
+		}
+
+		for (int i = 0; i < Settings.STREAM_QUEUE; i++) { this.queue(); }
+		return lvl;
+	} /* End method createLevel */
+
+
+	/**
+	 * Take the next chunk if it has been built.
+	 *
+	 * Never waits, so it may be called between simulation steps; another
+	 * chunk is started in place of the one taken. A chunk that failed to
+	 * build is started again rather than skipped, so chunks are always
+	 * taken in order.
+	 *
+	 * @return next chunk as a level of its own, or null if it is not ready.
+	 */
+	public synchronized Level poll() {
+		if (this.worker.isShutdown()) { return null; } // Stream closed
+
+		Future<Level> head = this.pending.peek();
+		if ((head == null) || (!head.isDone())) { return null; }
+
+		// Chunks in the queue are in order, ending before `next`
+		int chunk = this.next - this.pending.size();
+		this.pending.poll();
+
+		Level ret;
+		try {
+			ret = head.get();
+		} catch (Exception e) {
+			ret = null; // Chunk failed to build
+		}
+		if (ret == null) {
+			// Build the same chunk again, still first in the queue
+			this.pending.addFirst(this.build(chunk));
+			return null;
+		}
+
+		this.queue(); // Keep the same number of chunks ahead
+		return ret;
+	} /* End method poll */
+
+
+	/**
+	 * Start building the next chunk in the background.
+	 */
+	private void queue() {
+		this.pending.add(this.build(this.next++));
+	} /* End method queue */
+
+
+	/**
+	 * Build a chunk in the background.
+	 *
+	 * @param chunk number of the chunk.
+	 * @return chunk as a level of its own once built, or null if it
+	 *         failed to build.
+	 */
+	private Future<Level> build(final int chunk) {
+		return this.worker.submit(new Callable<Level>() {
+			public Level call() {
+				byte[] codes = generate(chunk, 1);
+
+				Level ret = new Level(tiles, costumes, zoom);
+				if (!ret.loadCodes(
+					biome, Settings.GEN_ROWS, Settings.GEN_CHUNK, codes
+				)) {
+					return null;
+				}
+				return ret;
+			}
+		});
+	} /* End method build */
+
+
+	/**
+	 * Make the tiles of chunks side by side.
+	 *
+	 * Only uses the LevelGenerator, which keeps no state between chunks,
+	 * so may be called from any thread.
+	 *
+	 * @param first number of the first chunk to make.
+	 * @param chunks number of chunks to make.
+	 * @return characters of every tile of the chunks, one row after another.
+	 */
+	private byte[] generate(int first, int chunks) {
+		int rows = Settings.GEN_ROWS;
+		int w = Settings.GEN_CHUNK;
+		int cols = chunks * w;
+
+		byte[][] grid = new byte[rows][w];
+		byte[] codes = new byte[rows * cols];
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			this.gen.fillChunk(first + chunk, grid);
+			for (int row = 0; row < rows; row++) {
+				System.arraycopy(grid[row], 0, codes, row * cols + chunk * w, w);
+			}
+		}
+		return codes;
+	} /* End method generate */
+
+
+	/**
+	 * Stop building chunks, once the level is no longer played.
+	 */
+	public synchronized void close() { this.worker.shutdownNow(); }
+
+
+	/**
+	 * Get biome of the level.
+	 */
+	public Biome getBiome() { return this.biome; }
+
+} /* End class WorldStream */